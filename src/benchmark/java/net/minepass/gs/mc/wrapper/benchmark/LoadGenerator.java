@@ -0,0 +1,319 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper.benchmark;
+
+import net.minepass.gs.mc.wrapper.JoinTracer;
+import net.minepass.gs.mc.wrapper.LatencyHistogram;
+import net.minepass.gs.mc.wrapper.MP_MinecraftWrapper;
+import net.minepass.gs.mc.wrapper.WrapperMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a wrapper with synthetic server output to find the join and log
+ * rates it can sustain.
+ * <p/>
+ * The generator plays the vanilla server: it logs startup, authenticator,
+ * login, logout, chat and shutdown lines from threads named like the
+ * server's, through the MinePass appender and filter (log4j2-loadtest.xml).
+ * Commands written by the wrapper are read back from System.in, which the
+ * console manager replaces with its InputBridge, and kicks and game mode
+ * changes are confirmed as the server would. Passes come from StubMinePass.
+ * <p/>
+ * Reports login-to-command latency for kicks and game mode changes, join
+ * stage times, ScheduledTasks run times and the wrapper metrics.
+ * <p/>
+ * Run with: gradle benchmark -Pbench=LoadGenerator -PbenchArgs="-joins 5 -chat 2000 -seconds 60"
+ * <pre>
+ * -joins N       player joins per second (default 2)
+ * -chat N        chat lines per second (default 500, 0 for none)
+ * -seconds N     test duration (default 60)
+ * -session N     seconds a permitted player stays online (default 30)
+ * -population N  distinct players (default 10000)
+ * -passes N      players with a pass, out of every 10 (default 9)
+ * -denied N      every Nth pass does not permit access (default 5)
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private int joinsPerSecond = 2;
+    private int chatPerSecond = 500;
+    private int seconds = 60;
+    private int sessionSeconds = 30;
+    private int population = 10000;
+    private int passDecile = 9;
+    private int deniedEvery = 5;
+
+    private StubMinePass minepass;
+    private MP_MinecraftWrapper wrapper;
+    private Logger serverLog;
+    private Logger authLog;
+    private ScheduledExecutorService serverThread;
+    private ScheduledExecutorService authThread;
+
+    private final ConcurrentHashMap<String, Long> loginTimes = new ConcurrentHashMap<>();
+    private final LatencyHistogram kickLatency = new LatencyHistogram();
+    private final LatencyHistogram gameModeLatency = new LatencyHistogram();
+    private final AtomicLong joins = new AtomicLong();
+    private final AtomicLong chatLines = new AtomicLong();
+    private final AtomicLong commands = new AtomicLong();
+    private volatile String sinkFailure;
+    private int nextPlayer = 0;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "-joins": generator.joinsPerSecond = value; break;
+                case "-chat": generator.chatPerSecond = value; break;
+                case "-seconds": generator.seconds = value; break;
+                case "-session": generator.sessionSeconds = value; break;
+                case "-population": generator.population = value; break;
+                case "-passes": generator.passDecile = value; break;
+                case "-denied": generator.deniedEvery = value; break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        generator.run();
+        System.exit(generator.sinkFailure == null ? 0 : 1);
+    }
+
+    private void run() throws Exception {
+        System.setProperty("log4j.configurationFile", "log4j2-loadtest.xml");
+        serverLog = LogManager.getLogger("net.minecraft.server.MinecraftServer");
+        authLog = LogManager.getLogger("net.minecraft.server.network.LoginListener");
+
+        minepass = new StubMinePass(StubMinePass.config(), population, passDecile, deniedEvery);
+        wrapper = new MP_MinecraftWrapper(minepass);
+        wrapper.launchManagers();
+
+        serverThread = Executors.newSingleThreadScheduledExecutor(named("Server thread"));
+        authThread = Executors.newSingleThreadScheduledExecutor(named("User Authenticator #1"));
+
+        Thread sink = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readCommands();
+            }
+        }, "LoadGenerator Sink");
+        sink.setDaemon(true);
+        sink.start();
+
+        serverThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                serverLog.info("Starting minecraft server version 1.12.2");
+                serverLog.info("Done (1.000s)! For help, type \"help\" or \"?\"");
+            }
+        });
+        awaitStarted();
+
+        if (chatPerSecond > 0) {
+            final long chatBatch = Math.max(1, chatPerSecond / 100);
+            serverThread.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < chatBatch; i++) {
+                        long n = chatLines.incrementAndGet();
+                        serverLog.info("<Load{}> is anyone up for a trip to the nether? {}", n % population, n);
+                    }
+                }
+            }, 0, chatBatch * 1000000L / chatPerSecond, TimeUnit.MICROSECONDS);
+        }
+
+        authThread.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                join();
+            }
+        }, 0, 1000000L / Math.max(1, joinsPerSecond), TimeUnit.MICROSECONDS);
+
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        authThread.shutdownNow();
+        serverThread.shutdownNow();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Allow pending logins to be handled before stopping.
+        Thread.sleep(5000);
+        Thread shutdown = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serverLog.info("Stopping server");
+            }
+        }, "Server Shutdown Thread");
+        shutdown.start();
+        shutdown.join();
+        while (wrapper.getState().minepassStarted) {
+            Thread.sleep(100);
+        }
+
+        report(elapsed);
+    }
+
+    /**
+     * Authenticate the next offline player with a pass, then log them in.
+     */
+    private void join() {
+        for (int tries = 0; tries < population; tries++) {
+            final int i = nextPlayer;
+            nextPlayer = (nextPlayer + 1) % population;
+            final String name = minepass.getName(i);
+            if (!minepass.hasPass(i) || loginTimes.containsKey(name)) {
+                continue;  // without a pass the server whitelist refuses them
+            }
+
+            authLog.info("UUID of player {} is {}", name, minepass.getUUID(i));
+            loginTimes.put(name, 0L);
+            serverThread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    loginTimes.put(name, System.nanoTime());
+                    joins.incrementAndGet();
+                    serverLog.info("{}[/127.0.0.1:{}] logged in with entity id {} at (0.5, 64.0, 0.5)", name, 40000 + i % 20000, i);
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+            serverThread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    logout(name);
+                }
+            }, sessionSeconds, TimeUnit.SECONDS);
+            return;
+        }
+    }
+
+    private void logout(String name) {
+        if (loginTimes.remove(name) != null) {
+            serverLog.info("{} left the game", name);
+        }
+    }
+
+    /**
+     * Read commands the way the server console would, answering kicks and game mode changes.
+     * <p/>
+     * Runs for the whole test, so ending early is recorded and reported as a failed run.
+     */
+    private void readCommands() {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String command;
+        try {
+            while ((command = in.readLine()) != null) {
+                long now = System.nanoTime();
+                commands.incrementAndGet();
+
+                if (command.startsWith("kick ")) {
+                    final String name = command.substring(5, command.indexOf(' ', 5));
+                    record(kickLatency, name, now);
+                    serverThread.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serverLog.info("Kicked {} from the game", name);
+                            logout(name);
+                        }
+                    });
+                } else if (command.startsWith("gamemode ") && command.contains("[name=")) {
+                    int start = command.indexOf("[name=") + 6;
+                    final String name = command.substring(start, command.indexOf(',', start));
+                    record(gameModeLatency, name, now);
+                    serverThread.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serverLog.info("Set {}'s game mode to Creative Mode", name);
+                        }
+                    });
+                }
+            }
+            sinkFailure = "console input closed";
+        } catch (IOException | RuntimeException e) {
+            sinkFailure = e.toString();
+        }
+    }
+
+    private void record(LatencyHistogram histogram, String name, long now) {
+        Long login = loginTimes.get(name);
+        if (login != null && login != 0) {
+            histogram.record(TimeUnit.NANOSECONDS.toMillis(now - login));
+        }
+    }
+
+    private void awaitStarted() throws InterruptedException {
+        for (int i = 0; i < 100 && !wrapper.getState().minepassStarted; i++) {
+            Thread.sleep(100);
+        }
+        if (!wrapper.getState().minepassStarted) {
+            throw new IllegalStateException("MinePass did not start, is log4j2-loadtest.xml on the classpath?");
+        }
+    }
+
+    private void report(long elapsedMillis) {
+        double secs = elapsedMillis / 1000.0;
+        JoinTracer tracer = wrapper.getServerManager().getJoinTracer();
+        LatencyHistogram tasks = wrapper.getServerManager().getTaskRunTime();
+
+        System.out.println();
+        if (sinkFailure != null) {
+            System.out.println("FAILED: command sink stopped during the run (" + sinkFailure
+                    + "), kick and game mode counts are incomplete");
+        }
+        System.out.println(String.format("Offered:   %.1f joins/s, %.0f chat lines/s over %.0fs",
+                joins.get() / secs, chatLines.get() / secs, secs));
+        System.out.println(String.format("Handled:   %d kicks, %d game mode changes, %d commands received",
+                kickLatency.getCount(), gameModeLatency.getCount(), commands.get()));
+        System.out.println("Kick:      " + kickLatency.summary());
+        System.out.println("Game mode: " + gameModeLatency.summary());
+        System.out.println("Tasks run: " + tasks.summary());
+        for (JoinTracer.Stage stage : JoinTracer.Stage.values()) {
+            if (stage != JoinTracer.Stage.AUTHENTICATED) {
+                System.out.println(String.format("  %-20s %s", stage.name().toLowerCase(), tracer.getStageTime(stage).summary()));
+            }
+        }
+        System.out.println();
+        System.out.print(WrapperMetrics.format(WrapperMetrics.collect(wrapper)));
+    }
+
+    private static ThreadFactory named(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+}
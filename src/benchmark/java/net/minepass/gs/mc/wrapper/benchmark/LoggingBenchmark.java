@@ -0,0 +1,83 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper.benchmark;
+
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures time and allocation spent on the server thread per logged chat
+ * line, for the default and the performance logging profiles.
+ * <p/>
+ * Put minecraft_server.jar in the project directory so that the Mojang
+ * Queue appender (and the server's log4j version) are used.
+ * <p/>
+ * Run with: gradle benchmark -Pbench=LoggingBenchmark
+ */
+public class LoggingBenchmark {
+
+    private static final String[] PROFILES = {"log4j2.xml", "log4j2-performance.xml"};
+    private static final int WARMUP = 50000;
+    private static final int LINES = 200000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println(String.format("%-24s %12s %14s", "profile", "ns/line", "bytes/line"));
+
+        for (String profile : PROFILES) {
+            final LoggerContext context = new LoggerContext(profile);
+            context.setConfigLocation(LoggingBenchmark.class.getResource("/" + profile).toURI());
+            final Logger logger = context.getLogger("net.minecraft.server.MinecraftServer");
+            final long[] result = new long[2];
+
+            // Log from a thread named like the vanilla main thread.
+            Thread server = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < WARMUP; i++) {
+                        logger.info("<Player{}> warming up the chat pipeline {}", i % 200, i);
+                    }
+
+                    com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+                    long id = Thread.currentThread().getId();
+                    long allocated = mx.getThreadAllocatedBytes(id);
+                    long start = System.nanoTime();
+                    for (int i = 0; i < LINES; i++) {
+                        logger.info("<Player{}> is anyone up for a trip to the nether? {}", i % 200, i);
+                    }
+                    result[0] = System.nanoTime() - start;
+                    result[1] = mx.getThreadAllocatedBytes(id) - allocated;
+                }
+            }, "Server thread");
+            server.start();
+            server.join();
+            context.stop();
+
+            System.out.println(String.format("%-24s %12.0f %14.1f",
+                    profile, (double) result[0] / LINES, (double) result[1] / LINES));
+        }
+    }
+}
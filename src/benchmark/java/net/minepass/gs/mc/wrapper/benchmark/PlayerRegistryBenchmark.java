@@ -0,0 +1,125 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper.benchmark;
+
+import net.minepass.gs.mc.wrapper.PlayerRegistry;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares the heap cost of the PlayerRegistry against the three
+ * ConcurrentHashMaps it replaced in CommonState, at 10k, 100k and 1M
+ * authenticated players (1% of them online).
+ * <p/>
+ * Run with: gradle benchmark -Pbench=PlayerRegistryBenchmark
+ *
+ * @see PlayerRegistryCheck
+ */
+public class PlayerRegistryBenchmark {
+
+    private static final int[] SIZES = {10000, 100000, 1000000};
+
+    private static volatile Object sink;  // keeps the populated structure reachable until measured
+
+    public static void main(String[] args) {
+        System.out.println(String.format("%10s %18s %18s %10s", "players", "maps (B/entry)", "registry (B/entry)", "ratio"));
+
+        for (int size : SIZES) {
+            UUID[] uuids = new UUID[size];
+            String[] names = new String[size];
+            Random random = new Random(size);
+            for (int i = 0; i < size; i++) {
+                uuids[i] = new UUID(random.nextLong(), random.nextLong());
+                names[i] = "Player" + i;
+            }
+
+            long maps = measure(new Populator() {
+                @Override
+                public Object populate(UUID[] uuids, String[] names) {
+                    ConcurrentHashMap<String, UUID> authUUIDs = new ConcurrentHashMap<>();
+                    ConcurrentHashMap<UUID, String> authNames = new ConcurrentHashMap<>();
+                    ConcurrentHashMap<String, UUID> current = new ConcurrentHashMap<>();
+                    for (int i = 0; i < uuids.length; i++) {
+                        // UUIDs are re-created, as they are when parsed from each log line.
+                        UUID uuid = new UUID(uuids[i].getMostSignificantBits(), uuids[i].getLeastSignificantBits());
+                        authUUIDs.put(names[i], uuid);
+                        authNames.put(uuid, names[i]);
+                        if (i % 100 == 0) {
+                            current.put(names[i], uuid);
+                        }
+                    }
+                    return new Object[]{authUUIDs, authNames, current};
+                }
+            }, uuids, names);
+
+            long registry = measure(new Populator() {
+                @Override
+                public Object populate(UUID[] uuids, String[] names) {
+                    PlayerRegistry players = new PlayerRegistry();
+                    for (int i = 0; i < uuids.length; i++) {
+                        players.authenticated(names[i], uuids[i]);
+                        if (i % 100 == 0) {
+                            players.login(names[i]);
+                        }
+                    }
+                    return players;
+                }
+            }, uuids, names);
+
+            System.out.println(String.format("%10d %18.1f %18.1f %9.2fx",
+                    size, (double) maps / size, (double) registry / size, (double) maps / registry));
+        }
+    }
+
+    private interface Populator {
+        Object populate(UUID[] uuids, String[] names);
+    }
+
+    /**
+     * Retained heap of the populated structure, excluding the shared name strings.
+     */
+    private static long measure(Populator populator, UUID[] uuids, String[] names) {
+        long before = usedHeap();
+        sink = populator.populate(uuids, names);
+        long after = usedHeap();
+        sink = null;
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
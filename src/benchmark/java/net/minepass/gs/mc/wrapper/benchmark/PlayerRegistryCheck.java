@@ -0,0 +1,186 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper.benchmark;
+
+import net.minepass.gs.mc.wrapper.PlayerRegistry;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Behaviour checks for the PlayerRegistry, covering the cases its tables
+ * and online list have to get right: login and logout, names moving to a
+ * new UUID, name index tombstones, and growth while players are online.
+ * <p/>
+ * Exits with an exception on the first failed check.
+ * <p/>
+ * Run with: gradle benchmark -Pbench=PlayerRegistryCheck
+ *
+ * @see PlayerRegistryBenchmark
+ */
+public class PlayerRegistryCheck {
+
+    public static void main(String[] args) {
+        loginAndLogout();
+        nameMovesToNewUUID();
+        tombstoneReuse();
+        resizeWhileOnline();
+        logoutReturnsLoginTime();
+        System.out.println("PlayerRegistry checks passed");
+    }
+
+    private static void loginAndLogout() {
+        PlayerRegistry players = new PlayerRegistry();
+        UUID steve = uuid(1);
+
+        check(players.login("Steve") == null, "login before authentication is ignored");
+        players.authenticated("Steve", steve);
+        check(steve.equals(players.getAuthUUID("Steve")), "authenticated name resolves to its UUID");
+        check("Steve".equals(players.getAuthName(steve)), "authenticated UUID resolves to its name");
+        check(!players.isOnline(steve), "authenticated player is not online");
+
+        check(steve.equals(players.login("Steve")), "login returns the UUID");
+        check(steve.equals(players.login("Steve")), "repeated login returns the UUID");
+        check(players.getOnlineCount() == 1, "repeated login is counted once");
+        check(players.isOnline(steve), "logged in player is online");
+        check("Steve".equals(players.getOnlinePlayers().get(steve)), "online snapshot holds the player");
+
+        check(players.logout("Steve") > 0, "logout of an online player");
+        check(!players.isOnline(steve) && !players.hasOnlinePlayers(), "logged out player is offline");
+        check(steve.equals(players.getAuthUUID("Steve")), "logout keeps the authentication");
+        check(players.logout("Steve") == 0, "second logout finds nobody");
+        check(players.logout("Alex") == 0, "logout of an unknown name");
+    }
+
+    private static void nameMovesToNewUUID() {
+        PlayerRegistry players = new PlayerRegistry();
+        UUID previous = uuid(1);
+        UUID current = uuid(2);
+
+        players.authenticated("Steve", previous);
+        players.login("Steve");
+        players.authenticated("Steve", current);
+        check(current.equals(players.getAuthUUID("Steve")), "name resolves to the latest UUID");
+        check(players.size() == 2, "both UUIDs are kept");
+
+        check(current.equals(players.login("Steve")), "login resolves to the latest UUID");
+        check(players.getOnlineCount() == 1, "name is only online once");
+        check(players.isOnline(current) && !players.isOnline(previous), "online entry moved to the latest UUID");
+
+        players.logout("Steve");
+        check(!players.hasOnlinePlayers(), "logout by name removes the moved entry");
+    }
+
+    private static void tombstoneReuse() {
+        PlayerRegistry players = new PlayerRegistry();
+        UUID steve = uuid(1);
+        UUID alex = uuid(2);
+        players.authenticated("Alex", alex);
+
+        // Each rename leaves a tombstone in the name index, far more than the table holds.
+        for (int i = 0; i < 100000; i++) {
+            players.authenticated("Steve" + i, steve);
+        }
+        check(players.size() == 2, "renames do not add entries");
+        check(steve.equals(players.getAuthUUID("Steve99999")), "latest name resolves");
+        check(players.getAuthUUID("Steve99998") == null, "previous name is removed");
+        check(players.getAuthUUID("Steve0") == null, "first name is removed");
+        check("Steve99999".equals(players.getAuthName(steve)), "UUID resolves to the latest name");
+        check(alex.equals(players.getAuthUUID("Alex")), "other names survive the churn");
+
+        players.authenticated("Steve", steve);
+        check(steve.equals(players.login("Steve")), "renamed player can log in");
+    }
+
+    private static void resizeWhileOnline() {
+        PlayerRegistry players = new PlayerRegistry();
+        int online = 50;
+        long before = System.currentTimeMillis();
+        for (int i = 0; i < online; i++) {
+            players.authenticated("Online" + i, uuid(i + 1));
+            players.login("Online" + i);
+        }
+        long after = System.currentTimeMillis();
+
+        // Several resizes from the initial capacity.
+        int total = 20000;
+        for (int i = online; i < total; i++) {
+            players.authenticated("Player" + i, uuid(i + 1));
+        }
+        check(players.size() == total, "all players are stored");
+        check(players.getOnlineCount() == online, "online players survive resizing");
+
+        Map<UUID, String> snapshot = players.getOnlinePlayers();
+        for (int i = 0; i < online; i++) {
+            UUID uuid = uuid(i + 1);
+            check(("Online" + i).equals(snapshot.get(uuid)), "online slot remapped to the right player");
+            check(players.isOnline(uuid), "online player found after resizing");
+            check(uuid.equals(players.getAuthUUID("Online" + i)), "name index rebuilt after resizing");
+        }
+        for (int i = online; i < total; i += 997) {
+            check(uuid(i + 1).equals(players.getAuthUUID("Player" + i)), "offline player found after resizing");
+            check(!players.isOnline(uuid(i + 1)), "offline player stays offline after resizing");
+        }
+
+        for (int i = 0; i < online; i++) {
+            long loggedIn = players.logout("Online" + i);
+            check(loggedIn >= before && loggedIn <= after, "login time carried over by resizing");
+        }
+        check(!players.hasOnlinePlayers(), "all players logged out");
+    }
+
+    private static void logoutReturnsLoginTime() {
+        PlayerRegistry players = new PlayerRegistry();
+        players.authenticated("Steve", uuid(1));
+
+        long before = System.currentTimeMillis();
+        players.login("Steve");
+        long after = System.currentTimeMillis();
+        long loggedIn = players.logout("Steve");
+        check(loggedIn >= before && loggedIn <= after, "logout returns the login time");
+
+        sleep(5);
+        players.login("Steve");
+        check(players.logout("Steve") > loggedIn, "next session has its own login time");
+    }
+
+    private static UUID uuid(long n) {
+        return new UUID(0x1234L, n);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            throw new IllegalStateException("PlayerRegistry check failed: " + description);
+        }
+    }
+}
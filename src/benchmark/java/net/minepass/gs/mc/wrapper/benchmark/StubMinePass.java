@@ -0,0 +1,131 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper.benchmark;
+
+import net.minepass.api.gameserver.MPConfig;
+import net.minepass.api.gameserver.MPConfigException;
+import net.minepass.api.gameserver.MPPlayer;
+import net.minepass.api.gameserver.MPServer;
+import net.minepass.api.gameserver.MPStartupException;
+import net.minepass.gs.mc.MinePassMC;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.UUID;
+
+/**
+ * MinePass instance serving a generated pass population from memory,
+ * with syncing and uploads disabled.
+ * <p/>
+ * Player i is named "Load" + i. Of every 10 players, passDecile have a
+ * pass, and of those every deniedEvery-th pass does not permit access.
+ */
+public class StubMinePass extends MinePassMC {
+
+    private final UUID[] uuids;
+    private final String[] names;
+    private final HashMap<UUID, MPPlayer> passes = new HashMap<>();
+    private final MPServer server = new MPServer();
+    private volatile long sent = 0;
+
+    public StubMinePass(MPConfig config, int population, int passDecile, int deniedEvery)
+            throws MPConfigException, MPStartupException {
+        super(config);
+
+        server.join_url = "https://minepass.net/join";
+        server.whitelist_imported = true;
+
+        uuids = new UUID[population];
+        names = new String[population];
+        int withPass = 0;
+        for (int i = 0; i < population; i++) {
+            uuids[i] = new UUID(0x4c6f6164L, i + 1);
+            names[i] = "Load" + i;
+            if (i % 10 < passDecile) {
+                MPPlayer player = new MPPlayer();
+                player.name = names[i];
+                player.privileges = withPass++ % deniedEvery == deniedEvery - 1
+                        ? Collections.<String>emptyList()
+                        : Arrays.asList("mc:creative");
+                passes.put(uuids[i], player);
+            }
+        }
+    }
+
+    public static MPConfig config() {
+        MPConfig config = new MPConfig();
+        config.variant = "MCWrapper LoadGenerator";
+        config.api_host = "http://127.0.0.1:9";
+        config.server_uuid = new UUID(0, 1).toString();
+        config.server_secret = "loadtest";
+        config.enforce_whitelist = true;
+        return config;
+    }
+
+    public UUID getUUID(int i) {
+        return uuids[i];
+    }
+
+    public String getName(int i) {
+        return names[i];
+    }
+
+    public boolean hasPass(int i) {
+        return passes.containsKey(uuids[i]);
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    @Override
+    public MPPlayer getPlayer(UUID uuid) {
+        return passes.get(uuid);
+    }
+
+    @Override
+    public MPServer getServer() {
+        return server;
+    }
+
+    @Override
+    public boolean getEnforceWhitelist() {
+        return true;
+    }
+
+    @Override
+    public void sync() {
+    }
+
+    @Override
+    public void sendObject(Object object, Object callback) {
+        sent++;
+    }
+
+    @Override
+    public void updateLocalWhitelist() {
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.UUID;
+
+/**
+ * A reusable view over a range of a character buffer.
+ * <p/>
+ * Slices let parsers work on offsets into the current log line rather
+ * than on substrings, and are re-pointed for every line. Call toString()
+ * only when a copy must outlive the line.
+ * <p/>
+ * Also provides allocation-free comparison and UUID parsing helpers
+ * for any CharSequence range.
+ *
+ * @see LogLine
+ * @see NamePool
+ */
+public final class CharSlice implements CharSequence {
+
+    private char[] buf;
+    private int start;
+    private int end;
+
+    public CharSlice() {
+        this(new char[0], 0, 0);
+    }
+
+    public CharSlice(char[] buf, int start, int end) {
+        set(buf, start, end);
+    }
+
+    public CharSlice set(char[] buf, int start, int end) {
+        this.buf = buf;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return buf[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new CharSlice(buf, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, start, end - start);
+    }
+
+    // Helpers
+    // ------------------------------------------------------------------------------------------------------------- //
+
+    public static boolean startsWith(CharSequence cs, String prefix) {
+        int n = prefix.length();
+        if (cs.length() < n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (cs.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean contentEquals(CharSequence cs, String value) {
+        return cs.length() == value.length() && startsWith(cs, value);
+    }
+
+    public static boolean equalsIgnoreCase(CharSequence cs, String value) {
+        int n = value.length();
+        if (cs.length() != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            char a = cs.charAt(i);
+            char b = value.charAt(i);
+            if (a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a UUID, with or without dashes, directly from a character range.
+     *
+     * @throws IllegalArgumentException if the range is not a valid UUID
+     */
+    public static UUID parseUUID(CharSequence cs, int start, int end) {
+        long msb = 0;
+        long lsb = 0;
+        int digits = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = cs.charAt(i);
+            if (c == '-') {
+                if (digits != 8 && digits != 12 && digits != 16 && digits != 20) {
+                    throw new IllegalArgumentException("Invalid UUID dash position");
+                }
+                continue;
+            }
+
+            int v = Character.digit(c, 16);
+            if (v < 0 || digits >= 32) {
+                throw new IllegalArgumentException("Invalid UUID character");
+            }
+            if (digits < 16) {
+                msb = (msb << 4) | v;
+            } else {
+                lsb = (lsb << 4) | v;
+            }
+            digits++;
+        }
+
+        if (digits != 32) {
+            throw new IllegalArgumentException("Invalid UUID length");
+        }
+        return new UUID(msb, lsb);
+    }
+}
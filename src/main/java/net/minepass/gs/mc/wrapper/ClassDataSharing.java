@@ -0,0 +1,249 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Optional startup mode which runs the wrapper and server in a child JVM
+ * backed by a dynamic class data sharing (AppCDS) archive.
+ * <p/>
+ * Enabled by [class_data_sharing=true]. The first run records every class
+ * loaded by the wrapper, MinePass core and vanilla server, and the archive
+ * is written when the server stops. Later runs map the archive instead of
+ * loading and verifying those classes from the jars.
+ * <p/>
+ * The archive is keyed on the wrapper version and jar, the server jar and
+ * the JVM, so an update to any of them starts a new archive and the stale
+ * one is removed. Requires Java 13 or later, on Java 19+ the JVM also
+ * validates and recreates the archive by itself.
+ * <p/>
+ * The parent JVM only waits for the child, forwarding its exit status and
+ * terminating it when the parent itself is asked to stop. As the child is
+ * given the same JVM options, the mode is refused for options that would
+ * cost memory or clash when applied twice (-Xms, AlwaysPreTouch, agents
+ * and JMX). The operator is then shown the flags to add to their start
+ * script instead.
+ *
+ * @see MP_MinecraftWrapper#main(String[])
+ */
+public final class ClassDataSharing {
+
+    static final String ARCHIVE_DIR = "minepass-cds";
+    static final String CHILD_PROPERTY = "minepass.cds";
+
+    private ClassDataSharing() {
+    }
+
+    /**
+     * @return how the running JVM was launched, "using", "creating" or "off"
+     */
+    public static String getMode() {
+        return System.getProperty(CHILD_PROPERTY, "off");
+    }
+
+    /**
+     * Relaunch the wrapper in a child JVM with a class data sharing archive,
+     * if enabled and supported.
+     *
+     * @param args the wrapper command line
+     * @return the child's exit status, or -1 to continue in this JVM
+     */
+    static int launch(String[] args) {
+        if (!MP_MinecraftWrapper.config.getProperty("class_data_sharing", "false").equals("true")
+                || System.getProperty(CHILD_PROPERTY) != null) {
+            return -1;
+        }
+
+        int javaVersion = getJavaVersion();
+        if (javaVersion < 13) {
+            System.out.println("WARNING: class_data_sharing requires Java 13 or later, starting without it");
+            return -1;
+        }
+
+        List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        for (String a : jvmArgs) {
+            if (a.startsWith("-XX:SharedArchiveFile") || a.startsWith("-XX:ArchiveClassesAtExit") || a.startsWith("-Xshare")) {
+                return -1;  // configured by hand
+            }
+        }
+
+        for (String a : jvmArgs) {
+            if (isDuplicateCostly(a)) {
+                System.out.println("WARNING: class_data_sharing would apply " + a + " to a second JVM, starting without it");
+                System.out.println("To use class data sharing, add these JVM options to the start script instead:");
+                if (javaVersion >= 19) {
+                    System.out.println("  -XX:+AutoCreateSharedArchive -XX:SharedArchiveFile=" + ARCHIVE_DIR + "/server.jsa");
+                } else {
+                    System.out.println("  -XX:ArchiveClassesAtExit=" + ARCHIVE_DIR + "/server.jsa (first run, then)");
+                    System.out.println("  -XX:SharedArchiveFile=" + ARCHIVE_DIR + "/server.jsa (recreate after updates)");
+                }
+                return -1;
+            }
+        }
+
+        // The JVM refuses to start when archiving with class directories on the path.
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (new File(entry).isDirectory()) {
+                System.out.println("WARNING: class_data_sharing requires running from the wrapper JAR, starting without it");
+                return -1;
+            }
+        }
+
+        File archiveDir = new File(ARCHIVE_DIR);
+        if (!archiveDir.isDirectory() && !archiveDir.mkdirs()) {
+            System.out.println("WARNING: Could not create " + ARCHIVE_DIR + ", starting without class data sharing");
+            return -1;
+        }
+        File archive = new File(archiveDir, "wrapper-" + getArchiveKey() + ".jsa");
+        removeStaleArchives(archiveDir, archive);
+
+        String mode = archive.isFile() ? "using" : "creating";
+        ArrayList<String> command = new ArrayList<>();
+        command.add(getJavaExecutable());
+        command.addAll(jvmArgs);
+        if (javaVersion >= 19) {
+            command.add("-XX:+AutoCreateSharedArchive");
+            command.add("-XX:SharedArchiveFile=" + archive.getPath());
+        } else if (mode.equals("using")) {
+            command.add("-XX:SharedArchiveFile=" + archive.getPath());
+        } else {
+            command.add("-XX:ArchiveClassesAtExit=" + archive.getPath());
+        }
+        command.add("-D" + CHILD_PROPERTY + "=" + mode);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MP_MinecraftWrapper.class.getName());
+        for (String a : args) {
+            command.add(a);
+        }
+
+        if (mode.equals("creating")) {
+            System.out.println("Creating class data sharing archive " + archive.getPath() + ", written when the server stops");
+        }
+
+        final Process child;
+        try {
+            child = new ProcessBuilder(command).inheritIO().start();
+        } catch (IOException e) {
+            System.out.println("WARNING: Could not launch with class data sharing: " + e.getMessage());
+            return -1;
+        }
+
+        // Pass a stop request (e.g. SIGTERM from a service manager) on to the server.
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                child.destroy();
+                try {
+                    child.waitFor();
+                } catch (InterruptedException e) {
+                    // Exit.
+                }
+            }
+        }, "MinePass CDS"));
+
+        while (true) {
+            try {
+                return child.waitFor();
+            } catch (InterruptedException e) {
+                // Keep waiting, the child owns the console.
+            }
+        }
+    }
+
+    /**
+     * Whether a JVM option would waste memory or clash if the parent and child both had it.
+     */
+    private static boolean isDuplicateCostly(String a) {
+        return a.startsWith("-Xms")
+                || a.equals("-XX:+AlwaysPreTouch")
+                || a.startsWith("-agentlib:") || a.startsWith("-agentpath:") || a.startsWith("-javaagent:")
+                || a.startsWith("-Xrunjdwp") || a.startsWith("-Xdebug")
+                || a.startsWith("-Dcom.sun.management.jmxremote") || a.startsWith("-XX:+ManagementServer");
+    }
+
+    private static int getJavaVersion() {
+        String v = System.getProperty("java.specification.version", "1.8");
+        if (v.startsWith("1.")) {
+            v = v.substring(2);
+        }
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String getJavaExecutable() {
+        File bin = new File(System.getProperty("java.home"), "bin");
+        File java = new File(bin, "java");
+        return java.isFile() ? java.getPath() : new File(bin, "java.exe").getPath();
+    }
+
+    /**
+     * Identify the combination of classes and JVM an archive was made from.
+     */
+    private static String getArchiveKey() {
+        CRC32 crc = new CRC32();
+        StringBuilder sb = new StringBuilder();
+        sb.append(MP_MinecraftWrapper.properties.getProperty("version")).append('\n');
+        sb.append(System.getProperty("java.vm.version")).append('\n');
+        sb.append(System.getProperty("java.class.path")).append('\n');
+        appendFile(sb, new File(MP_MinecraftWrapper.serverJarFileName));
+        try {
+            appendFile(sb, new File(MP_MinecraftWrapper.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
+        } catch (URISyntaxException | SecurityException | NullPointerException e) {
+            // Version only.
+        }
+        crc.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private static void appendFile(StringBuilder sb, File f) {
+        sb.append(f.getAbsolutePath()).append(' ').append(f.length()).append(' ').append(f.lastModified()).append('\n');
+    }
+
+    private static void removeStaleArchives(File archiveDir, File current) {
+        File[] files = archiveDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.getName().endsWith(".jsa") && !f.getName().equals(current.getName())) {
+                if (f.delete()) {
+                    System.out.println("Removed outdated class data sharing archive " + f.getPath());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+/**
+ * Priority lanes for commands sent to the server through the ConsoleManager.
+ * <p/>
+ * Operator input is always sent first. The remaining lanes share a per-tick
+ * command budget by weight, so security actions overtake routine and
+ * cosmetic commands without starving them.
+ *
+ * @see ConsoleManager
+ */
+public enum CommandLane {
+
+    /**
+     * Operator input from the console, never delayed.
+     */
+    CONSOLE(0),
+
+    /**
+     * Kicks and whitelist changes.
+     */
+    SECURITY(8),
+
+    /**
+     * Game modes and login privilege commands.
+     */
+    STANDARD(4),
+
+    /**
+     * Player messages.
+     */
+    COSMETIC(1);
+
+    final int weight;
+
+    CommandLane(int weight) {
+        this.weight = weight;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Correlates issued commands with the server's confirmation output.
+ * <p/>
+ * Kicks are registered when sent. Confirmation lines are matched by the
+ * CommandFeedbackEventParser and player logouts, recording
+ * command-to-confirmation latency. Commands not confirmed within their
+ * deadline are re-sent, and escalated once their retries are exhausted.
+ * <p/>
+ * tellraw produces no console output when it succeeds, and gamemode none
+ * when the player already has the mode, so neither is tracked.
+ *
+ * @see net.minepass.gs.mc.wrapper.parsers.CommandFeedbackEventParser
+ */
+public class CommandTracker {
+
+    public enum Type {
+        KICK(5000, 2, true);
+
+        final long deadline;
+        final int retries;
+        final boolean critical;
+
+        Type(long deadline, int retries, boolean critical) {
+            this.deadline = deadline;
+            this.retries = retries;
+            this.critical = critical;
+        }
+    }
+
+    private static final class Pending {
+        final Type type;
+        final String name;
+        final String command;
+        final CommandLane lane;
+        final long issued;
+        volatile long deadline;
+        volatile int attempts = 1;
+
+        Pending(Type type, String name, String command, CommandLane lane, long now) {
+            this.type = type;
+            this.name = name;
+            this.command = command;
+            this.lane = lane;
+            this.issued = now;
+            this.deadline = now + type.deadline;
+        }
+    }
+
+    private static final Type[] types = Type.values();
+
+    private final MP_MinecraftWrapper wrapper;
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final LatencyHistogram[] latency = new LatencyHistogram[types.length];
+    private final AtomicLong[] confirmed = new AtomicLong[types.length];
+    private final AtomicLong[] retried = new AtomicLong[types.length];
+    private final AtomicLong[] escalated = new AtomicLong[types.length];
+
+    public CommandTracker(MP_MinecraftWrapper wrapper) {
+        this.wrapper = wrapper;
+        for (int i = 0; i < types.length; i++) {
+            latency[i] = new LatencyHistogram();
+            confirmed[i] = new AtomicLong();
+            retried[i] = new AtomicLong();
+            escalated[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Register a command that has just been sent.
+     */
+    public void issued(Type type, String name, String command, CommandLane lane) {
+        pending.put(key(type, name), new Pending(type, name, command, lane, System.currentTimeMillis()));
+    }
+
+    /**
+     * Record confirmation output for a player.
+     *
+     * @return true if a pending command was confirmed
+     */
+    public boolean confirm(Type type, String name) {
+        Pending p = pending.remove(key(type, name));
+        if (p == null) {
+            return false;
+        }
+        int i = type.ordinal();
+        latency[i].record(System.currentTimeMillis() - p.issued);
+        confirmed[i].incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Retry or escalate commands past their deadline.
+     */
+    public void checkDeadlines(long now) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, Pending>> i = pending.entrySet().iterator();
+        while (i.hasNext()) {
+            Pending p = i.next().getValue();
+            if (now < p.deadline) {
+                continue;
+            }
+
+            if (p.attempts <= p.type.retries) {
+                p.attempts++;
+                p.deadline = now + p.type.deadline;
+                retried[p.type.ordinal()].incrementAndGet();
+                wrapper.getLogger().debug(String.format("Unconfirmed %s for %s, retrying", p.type.name().toLowerCase(), p.name), this);
+                wrapper.getConsoleManager().sendCommand(p.command, p.lane);
+            } else {
+                i.remove();
+                escalated[p.type.ordinal()].incrementAndGet();
+                String message = String.format("Server never confirmed %s for %s after %d attempts: %s",
+                        p.type.name().toLowerCase(), p.name, p.attempts, p.command);
+                if (p.type.critical) {
+                    wrapper.getLogger().error(message, this);
+                } else {
+                    wrapper.getLogger().debug(message, this);
+                }
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public LatencyHistogram getLatency(Type type) {
+        return latency[type.ordinal()];
+    }
+
+    public long getConfirmed(Type type) {
+        return confirmed[type.ordinal()].get();
+    }
+
+    public long getRetried(Type type) {
+        return retried[type.ordinal()].get();
+    }
+
+    public long getEscalated(Type type) {
+        return escalated[type.ordinal()].get();
+    }
+
+    private static String key(Type type, String name) {
+        return type.name() + ':' + name.toLowerCase();
+    }
+}
@@ -24,24 +24,15 @@
 
 package net.minepass.gs.mc.wrapper;
 
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-
 public final class CommonState {
 
     public String minecraftVersion = null;
-    public boolean minepassStarted = false;
-
-    /**
-     * Store player UUIDs as presented by authenticator events.
-     */
-    public final ConcurrentHashMap<String,UUID> playerAuthUUIDs = new ConcurrentHashMap<>();
-    public final ConcurrentHashMap<UUID,String> playerAuthNames = new ConcurrentHashMap<>();
+    public volatile boolean minepassStarted = false;  // also read on logging threads
 
     /**
-     * Current players per the login/logout events.
-     * This is stored in [name]=uuid format since most log events use player names.
+     * Player UUIDs as presented by authenticator events, and
+     * current players per the login/logout events.
      */
-    public final ConcurrentHashMap<String,UUID> currentPlayers = new ConcurrentHashMap<>();
+    public final PlayerRegistry players = new PlayerRegistry();
 
 }
@@ -0,0 +1,165 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Watches minepass.config and applies changed settings without a restart.
+ * <p/>
+ * [debug_enabled] and [enforce_whitelist] are applied at runtime, the latter
+ * by sending "whitelist on/off" once MinePass has started. Any other changed
+ * setting is reported as requiring a restart and keeps its running value in
+ * MP_MinecraftWrapper.config, so the configuration in memory always matches
+ * what is in effect.
+ * <p/>
+ * Changes are applied together, after editors have finished writing.
+ *
+ * @see MP_MinecraftWrapper#config
+ */
+public class ConfigWatcher implements Runnable {
+
+    static final long SETTLE_DELAY = 500;  // editors may write in several steps
+
+    private final MP_MinecraftWrapper wrapper;
+    private final File configFile;
+    private final WatchService watcher;
+
+    public ConfigWatcher(MP_MinecraftWrapper wrapper, File configFile) throws IOException {
+        this.wrapper = wrapper;
+        this.configFile = configFile.getAbsoluteFile();
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.configFile.getParentFile().toPath().register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    @Override
+    public void run() {
+        Path name = configFile.toPath().getFileName();
+
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (name.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+
+                if (changed) {
+                    Thread.sleep(SETTLE_DELAY);
+                    // Drop events caused by the same save.
+                    WatchKey pending = watcher.poll();
+                    if (pending != null) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Exit.
+        }
+    }
+
+    /**
+     * Read the configuration file and apply what has changed.
+     */
+    void reload() {
+        Properties updated = new Properties();
+        try (InputStream in = new FileInputStream(configFile)) {
+            updated.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            wrapper.getLogger().warn("Could not reload " + configFile.getName() + ": " + e.getMessage(), this);
+            return;
+        }
+
+        Properties config = MP_MinecraftWrapper.config;
+        Set<String> keys = new HashSet<>(config.stringPropertyNames());
+        keys.addAll(updated.stringPropertyNames());
+
+        ArrayList<String> applied = new ArrayList<>();
+        ArrayList<String> restart = new ArrayList<>();
+
+        synchronized (config) {
+            for (String key : keys) {
+                String value = updated.getProperty(key);
+                if (Objects.equals(config.getProperty(key), value)) {
+                    continue;
+                }
+                String change = key;
+
+                switch (key) {
+                    case "debug_enabled":
+                        wrapper.setDebug("true".equals(value));
+                        break;
+                    case "enforce_whitelist":
+                        boolean enforce = value == null || !value.equalsIgnoreCase("false");
+                        if (!wrapper.setEnforceWhitelist(enforce)) {
+                            change += " (server whitelist only, MinePass core applies it after restart)";
+                        }
+                        if (wrapper.getState().minepassStarted) {
+                            wrapper.getServerManager().applyWhitelistMode();
+                        }
+                        break;
+                    default:
+                        restart.add(key);
+                        continue;
+                }
+
+                if (value != null) {
+                    config.setProperty(key, value);
+                } else {
+                    config.remove(key);
+                }
+                applied.add(change);
+            }
+        }
+
+        if (!applied.isEmpty()) {
+            wrapper.getLogger().info("Applied " + configFile.getName() + " changes: " + String.join(", ", applied), this);
+        }
+        if (!restart.isEmpty()) {
+            wrapper.getLogger().warn("Restart required to apply " + configFile.getName() + " changes: " + String.join(", ", restart), this);
+        }
+    }
+}
@@ -30,25 +30,60 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The ConsoleManager creates an InputBridge between the vanilla Minecraft
  * server and the system's Standard-In (Console). Commands can be then
  * be sent to the server from the other MinePass threads.
+ * <p/>
+ * Commands are queued in priority lanes and fed into the bridge by a
+ * separate thread. Operator input is always sent first, while MinePass
+ * commands share a per-tick budget by lane weight, so an emergency stop
+ * or ban is never stuck behind a mass kick or warning wave.
  *
  * @see InputBridge
+ * @see CommandLane
  */
 public class ConsoleManager implements Runnable {
 
+    static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(50);  // one server tick
+    static final int COMMANDS_PER_WINDOW = 20;
+    static final int LAGGING_STANDARD_PER_WINDOW = 1;  // cosmetic commands wait entirely
+
+    private static final CommandLane[] lanes = CommandLane.values();
+
     private MP_MinecraftWrapper wrapper;
     private InputStream consoleInput;
     private InputBridge bridge;
 
+    private final Object signal = new Object();
+    private final ConcurrentLinkedQueue<String>[] queues;
+    private final AtomicInteger[] depths;
+    private final AtomicInteger[] maxDepths;
+    private final AtomicLong[] sent;
+    private volatile boolean closed = false;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public ConsoleManager(MP_MinecraftWrapper wrapper) {
         this.wrapper = wrapper;
         consoleInput = System.in;
         bridge = new InputBridge();
         System.setIn(bridge);
+
+        queues = new ConcurrentLinkedQueue[lanes.length];
+        depths = new AtomicInteger[lanes.length];
+        maxDepths = new AtomicInteger[lanes.length];
+        sent = new AtomicLong[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+            depths[i] = new AtomicInteger();
+            maxDepths[i] = new AtomicInteger();
+            sent[i] = new AtomicLong();
+        }
     }
 
     @Override
@@ -58,7 +93,11 @@ public class ConsoleManager implements Runnable {
 
         try {
             while((input=br.readLine())!=null){
-                sendCommand(input);
+                if (input.trim().equalsIgnoreCase(ResourceMonitor.CONSOLE_COMMAND)) {
+                    wrapper.getLogger().info(wrapper.getResourceMonitor().snapshot().toString(), this);
+                    continue;
+                }
+                sendCommand(input, CommandLane.CONSOLE);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -66,6 +105,200 @@ public class ConsoleManager implements Runnable {
     }
 
     public void sendCommand(String command) {
+        sendCommand(command, CommandLane.STANDARD);
+    }
+
+    public void sendCommand(String command, CommandLane lane) {
+        if (closed && lane != CommandLane.CONSOLE) {
+            return;
+        }
+        int i = lane.ordinal();
+        queues[i].add(command);
+        maxDepths[i].accumulateAndGet(depths[i].incrementAndGet(), Math::max);
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+    }
+
+    /**
+     * Stop accepting wrapper commands, operator input is still passed through.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Wait for a lane to be written out.
+     *
+     * @param lane the lane
+     * @param deadline time limit, in epoch millis
+     * @return the number of commands written meanwhile
+     */
+    public int awaitDrained(CommandLane lane, long deadline) {
+        int i = lane.ordinal();
+        long before = sent[i].get();
+        try {
+            while (depths[i].get() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return (int) (sent[i].get() - before);
+    }
+
+    /**
+     * Discard the commands still queued in a lane.
+     *
+     * @return the number of commands discarded
+     */
+    public int cancel(CommandLane lane) {
+        int i = lane.ordinal();
+        int cancelled = 0;
+        while (queues[i].poll() != null) {
+            depths[i].decrementAndGet();
+            cancelled++;
+        }
+        return cancelled;
+    }
+
+    public int getQueueDepth(CommandLane lane) {
+        return depths[lane.ordinal()].get();
+    }
+
+    public int getMaxQueueDepth(CommandLane lane) {
+        return maxDepths[lane.ordinal()].get();
+    }
+
+    public long getSentCount(CommandLane lane) {
+        return sent[lane.ordinal()].get();
+    }
+
+    public String getLaneStats() {
+        StringBuilder sb = new StringBuilder("Command lanes:");
+        for (CommandLane lane : lanes) {
+            sb.append(String.format(" %s=%d/%d (sent %d)",
+                    lane.name().toLowerCase(), getQueueDepth(lane), getMaxQueueDepth(lane), getSentCount(lane)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get the runnable which feeds queued commands into the bridge.
+     */
+    public Runnable getCommandFeeder() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    feedCommands();
+                } catch (InterruptedException e) {
+                    // Exit.
+                }
+            }
+        };
+    }
+
+    private void feedCommands() throws InterruptedException {
+        int[] credits = new int[lanes.length];
+        int[] allowance = new int[lanes.length];
+        long windowEnd = 0;
+        int budget = 0;
+
+        while (true) {
+            // Operator input always goes first.
+            if (write(CommandLane.CONSOLE)) {
+                continue;
+            }
+
+            long now = System.nanoTime();
+            if (now >= windowEnd) {
+                windowEnd = now + WINDOW_NANOS;
+                budget = COMMANDS_PER_WINDOW;
+                setAllowance(allowance);
+            }
+
+            boolean deferred = false;
+            if (budget > 0) {
+                CommandLane lane = nextLane(credits, allowance);
+                if (lane != null && write(lane)) {
+                    allowance[lane.ordinal()]--;
+                    budget--;
+                    continue;
+                }
+                deferred = lane == null && !isIdle();
+            }
+
+            synchronized (signal) {
+                if (depths[CommandLane.CONSOLE.ordinal()].get() > 0) {
+                    continue;
+                }
+                if (budget == 0 || deferred) {
+                    // Out of budget, or remaining commands are deferred.
+                    long waitNanos = windowEnd - System.nanoTime();
+                    if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(signal, waitNanos);
+                    }
+                } else if (isIdle()) {
+                    signal.wait();
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the per-window allowance of each lane, deferring
+     * routine and cosmetic commands while the server lags.
+     */
+    private void setAllowance(int[] allowance) {
+        ServerManager serverManager = wrapper.getServerManager();
+        boolean lagging = serverManager != null && serverManager.getTickHealth().isLagging();
+        for (int i = 0; i < lanes.length; i++) {
+            allowance[i] = COMMANDS_PER_WINDOW;
+        }
+        if (lagging) {
+            allowance[CommandLane.STANDARD.ordinal()] = LAGGING_STANDARD_PER_WINDOW;
+            allowance[CommandLane.COSMETIC.ordinal()] = 0;
+        }
+    }
+
+    /**
+     * Weighted round-robin over the non-console lanes with allowance left.
+     */
+    private CommandLane nextLane(int[] credits, int[] allowance) {
+        for (int round = 0; round < 2; round++) {
+            for (int i = 1; i < lanes.length; i++) {
+                if (credits[i] > 0 && allowance[i] > 0 && depths[i].get() > 0) {
+                    credits[i]--;
+                    return lanes[i];
+                }
+            }
+            // Refill once all waiting lanes have used their share.
+            for (int i = 1; i < lanes.length; i++) {
+                credits[i] = lanes[i].weight;
+            }
+        }
+        return null;
+    }
+
+    private boolean isIdle() {
+        for (AtomicInteger depth : depths) {
+            if (depth.get() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean write(CommandLane lane) {
+        int i = lane.ordinal();
+        String command = queues[i].poll();
+        if (command == null) {
+            return false;
+        }
+        depths[i].decrementAndGet();
+        sent[i].incrementAndGet();
         bridge.write(command + "\n");
+        return true;
     }
 }
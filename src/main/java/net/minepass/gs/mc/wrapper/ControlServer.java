@@ -0,0 +1,434 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Optional local control endpoint for automation.
+ * <p/>
+ * Listens on a loopback TCP port ([control_port]) or, on Java 16+, a Unix
+ * domain socket ([control_socket]). Requests and responses are frames of a
+ * 4-byte big-endian length followed by UTF-8 text, and may be pipelined.
+ * <p/>
+ * Any local user can reach a TCP port, so it requires [control_secret],
+ * which clients must send in an "auth" request before any other. A Unix
+ * socket is protected by its file permissions, and only requires the
+ * secret if one is configured.
+ * <p/>
+ * Requests:
+ * <pre>
+ *   auth &lt;secret&gt;       authenticate the connection
+ *   cmd &lt;command&gt;       queue a server command
+ *   urgent &lt;command&gt;    queue a command in the console lane
+ *   batch &lt;commands&gt;    queue newline-separated commands
+ *   players              list online players as uuid name
+ *   metrics              wrapper counters as name=value
+ *   joins [n]            the n most recent join traces
+ *   resources            cpu and allocation by subsystem since the last sample
+ * </pre>
+ * Responses start with "OK" or "ERR".
+ * <p/>
+ * All clients are served by one NIO selector thread. A client is not read
+ * from while more than MAX_PENDING_OUTPUT bytes of responses await it, and
+ * is disconnected if it does not take them within DRAIN_TIMEOUT.
+ *
+ * @see WrapperMetrics
+ */
+public class ControlServer implements Runnable {
+
+    static final int MAX_FRAME = 1024 * 1024;
+    static final int MAX_PENDING_OUTPUT = 256 * 1024;
+    static final long DRAIN_TIMEOUT = 30000;
+    static final long SELECT_TIMEOUT = 5000;
+
+    private final MP_MinecraftWrapper wrapper;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final File socketFile;
+    private final byte[] secret;
+
+    private ControlServer(MP_MinecraftWrapper wrapper, ServerSocketChannel server, File socketFile, String secret) throws IOException {
+        this.wrapper = wrapper;
+        this.server = server;
+        this.socketFile = socketFile;
+        this.secret = secret.isEmpty() ? null : secret.getBytes(StandardCharsets.UTF_8);
+        this.selector = Selector.open();
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Create a control server from the wrapper configuration.
+     *
+     * @return the server, or null if not configured
+     */
+    public static ControlServer fromConfig(MP_MinecraftWrapper wrapper) throws IOException {
+        String socketPath = MP_MinecraftWrapper.config.getProperty("control_socket", "").trim();
+        String port = MP_MinecraftWrapper.config.getProperty("control_port", "").trim();
+        String secret = MP_MinecraftWrapper.config.getProperty("control_secret", "").trim();
+
+        if (!socketPath.isEmpty()) {
+            File socketFile = new File(socketPath);
+            return new ControlServer(wrapper, openUnixSocket(socketFile), socketFile, secret);
+        }
+        if (!port.isEmpty() && !port.equals("0")) {
+            if (secret.isEmpty()) {
+                throw new IOException("control_port requires control_secret to be set");
+            }
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port)));
+            return new ControlServer(wrapper, channel, null, secret);
+        }
+        return null;
+    }
+
+    /**
+     * Open a Unix domain socket via reflection, as the wrapper targets Java 8.
+     */
+    private static ServerSocketChannel openUnixSocket(File socketFile) throws IOException {
+        try {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            Method open = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+            Method of = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+
+            Path path = socketFile.toPath();
+            if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (!isSocket(path)) {
+                    throw new IOException(socketFile.getPath() + " exists and is not a socket");
+                }
+                Files.delete(path);  // left over from an earlier run
+            }
+            ServerSocketChannel channel = (ServerSocketChannel) open.invoke(null, unix);
+            channel.bind((SocketAddress) of.invoke(null, socketFile.getPath()));
+            socketFile.deleteOnExit();
+            return channel;
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new IOException("Unix domain sockets require Java 16 or newer, use control_port instead", e);
+        }
+    }
+
+    private static boolean isSocket(Path path) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & 0170000) == 0140000;  // S_IFSOCK
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther();
+        }
+    }
+
+    public String getAddress() {
+        if (socketFile != null) {
+            return socketFile.getPath();
+        }
+        try {
+            return server.getLocalAddress().toString();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select(SELECT_TIMEOUT);
+                closeUndrained();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            wrapper.getLogger().error("Control socket failed: ".concat(String.valueOf(e.getMessage())), this);
+        } finally {
+            close();
+        }
+    }
+
+    public void close() {
+        try {
+            selector.close();
+            server.close();
+        } catch (IOException e) {
+            // Ignore.
+        }
+        if (socketFile != null) {
+            try {
+                Path path = socketFile.toPath();
+                if (Files.exists(path, LinkOption.NOFOLLOW_LINKS) && isSocket(path)) {
+                    Files.delete(path);
+                }
+            } catch (IOException e) {
+                // Ignore.
+            }
+        }
+    }
+
+    // Connections
+    // ------------------------------------------------------------------------------------------------------------- //
+
+    private static final class Connection {
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        int pending = 0;            // response bytes not yet written
+        long pausedSince = 0;       // when reading stopped for a slow client, or 0
+        boolean authenticated;
+        boolean rejected;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            Connection c = new Connection();
+            c.authenticated = secret == null;
+            channel.register(selector, SelectionKey.OP_READ, c);
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection c = (Connection) key.attachment();
+
+        if (channel.read(c.in) < 0) {
+            close(key);
+            return;
+        }
+        handleFrames(key, c);
+    }
+
+    /**
+     * Handle the complete frames in the input buffer, until the client has
+     * too many responses waiting.
+     */
+    private void handleFrames(SelectionKey key, Connection c) {
+        c.in.flip();
+        while (c.in.remaining() >= 4 && c.pending <= MAX_PENDING_OUTPUT) {
+            int length = c.in.getInt(c.in.position());
+            if (length < 0 || length > MAX_FRAME) {
+                close(key);
+                return;
+            }
+            if (c.in.remaining() < 4 + length) {
+                if (c.in.capacity() < 4 + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    larger.put(c.in);
+                    c.in = larger;
+                    c.in.flip();
+                }
+                break;
+            }
+            c.in.getInt();
+            String request = new String(c.in.array(), c.in.arrayOffset() + c.in.position(), length, StandardCharsets.UTF_8);
+            c.in.position(c.in.position() + length);
+            String response;
+            if (!c.authenticated) {
+                c.authenticated = authenticate(request);
+                c.rejected = !c.authenticated;
+                response = c.authenticated ? "OK" : "ERR authentication required";
+            } else {
+                try {
+                    response = handle(request);
+                } catch (RuntimeException e) {
+                    response = "ERR " + e;
+                }
+            }
+            ByteBuffer b = frame(response);
+            c.out.add(b);
+            c.pending += b.remaining();
+            if (c.rejected) {
+                c.in.position(c.in.limit());  // discard the rest, close once the error is sent
+                break;
+            }
+        }
+        c.in.compact();
+
+        int ops = 0;
+        if (c.pending <= MAX_PENDING_OUTPUT && !c.rejected) {
+            ops |= SelectionKey.OP_READ;
+            c.pausedSince = 0;
+        } else if (c.pausedSince == 0) {
+            c.pausedSince = System.currentTimeMillis();
+        }
+        if (!c.out.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    private boolean authenticate(String request) {
+        if (!request.startsWith("auth ")) {
+            return false;
+        }
+        return MessageDigest.isEqual(secret, request.substring(5).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Disconnect clients which have not taken their responses in time.
+     */
+    private void closeUndrained() {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+            Object a = key.attachment();
+            if (a instanceof Connection && ((Connection) a).pausedSince != 0
+                    && now - ((Connection) a).pausedSince > DRAIN_TIMEOUT) {
+                close(key);
+            }
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection c = (Connection) key.attachment();
+
+        ByteBuffer b;
+        while ((b = c.out.peek()) != null) {
+            c.pending -= channel.write(b);
+            if (b.hasRemaining()) {
+                return;
+            }
+            c.out.poll();
+        }
+
+        if (c.rejected) {
+            close(key);
+            return;
+        }
+        // Resume with any requests held back while output was pending.
+        handleFrames(key, c);
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Ignore.
+        }
+    }
+
+    private static ByteBuffer frame(String response) {
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.allocate(4 + bytes.length);
+        b.putInt(bytes.length).put(bytes);
+        b.flip();
+        return b;
+    }
+
+    // Requests
+    // ------------------------------------------------------------------------------------------------------------- //
+
+    String handle(String request) {
+        int space = request.indexOf(' ');
+        String op = space < 0 ? request.trim() : request.substring(0, space);
+        String arg = space < 0 ? "" : request.substring(space + 1);
+
+        switch (op) {
+            case "cmd":
+                return queue(arg, CommandLane.STANDARD);
+            case "urgent":
+                return queue(arg, CommandLane.CONSOLE);
+            case "batch": {
+                int queued = 0;
+                for (String command : arg.split("\n")) {
+                    if (!command.trim().isEmpty()) {
+                        wrapper.getConsoleManager().sendCommand(command, CommandLane.STANDARD);
+                        queued++;
+                    }
+                }
+                return "OK " + queued;
+            }
+            case "players": {
+                StringBuilder sb = new StringBuilder("OK\n");
+                for (Map.Entry<UUID, String> e : wrapper.getState().players.getOnlinePlayers().entrySet()) {
+                    sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+                }
+                return sb.toString();
+            }
+            case "joins": {
+                int limit = arg.trim().isEmpty() ? 20 : Integer.parseInt(arg.trim());
+                StringBuilder sb = new StringBuilder("OK\n");
+                for (JoinTracer.Trace t : wrapper.getServerManager().getJoinTracer().getRecent(limit)) {
+                    sb.append(t).append('\n');
+                }
+                return sb.toString();
+            }
+            case "metrics":
+                return "OK\n" + WrapperMetrics.format(WrapperMetrics.collect(wrapper));
+            case "resources":
+                return "OK\n" + wrapper.getResourceMonitor().snapshot() + '\n';
+            default:
+                return "ERR unknown request: " + op;
+        }
+    }
+
+    private String queue(String command, CommandLane lane) {
+        if (command.trim().isEmpty() || command.indexOf('\n') >= 0) {
+            return "ERR expected a single command";
+        }
+        wrapper.getConsoleManager().sendCommand(command, lane);
+        return "OK 1";
+    }
+}
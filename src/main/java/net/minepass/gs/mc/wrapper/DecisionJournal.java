@@ -0,0 +1,238 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Append-only binary journal of the decisions taken by the wrapper.
+ * <p/>
+ * Records have a fixed size and are written into a memory-mapped file,
+ * so appending costs a few buffer writes and no system call. A new file
+ * is started once the current one is full or a day old, and only the most
+ * recent files are kept.
+ * <p/>
+ * Enabled by setting [decision_journal] to a directory in minepass.config.
+ * <p/>
+ * File layout: a HEADER_SIZE byte header (magic, version, record size),
+ * followed by records. Unused records are zero-filled, i.e. have no time.
+ * <pre>
+ *  0  long   time (epoch millis)
+ *  8  long   player UUID, most significant bits
+ * 16  long   player UUID, least significant bits
+ * 24  byte   decision type (Type ordinal)
+ * 25  byte   value (e.g. game mode), -1 if none
+ * 26  short  reserved
+ * 28  int    reserved
+ * 32  byte[] player name, ASCII, zero-padded
+ * </pre>
+ *
+ * @see DecisionJournalReader
+ */
+public class DecisionJournal {
+
+    public enum Type {
+        LOGIN, LOGOUT, PASS_RESOLVED, PASS_MISSING, GAMEMODE_SET, KICK_ISSUED, WHITELIST_RELOAD
+    }
+
+    static final int MAGIC = 0x4d504a31;  // "MPJ1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 48;
+    static final int NAME_OFFSET = 32;
+    static final int NAME_LENGTH = RECORD_SIZE - NAME_OFFSET;
+
+    static final int RECORDS_PER_FILE = 65536;
+    static final long ROTATE_AGE = 24 * 60 * 60 * 1000;
+    static final int KEEP_FILES = 30;
+    static final String FILE_PREFIX = "decisions-";
+    static final String FILE_SUFFIX = ".mpj";
+
+    private final File directory;
+    private final MP_MinecraftWrapper wrapper;
+    private final byte[] nameBuffer = new byte[NAME_LENGTH];
+
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private long fileStarted;
+    private int position;
+    private long written = 0;
+
+    public DecisionJournal(MP_MinecraftWrapper wrapper, File directory) throws IOException {
+        this.wrapper = wrapper;
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create journal directory " + directory);
+        }
+        rotate(System.currentTimeMillis());
+    }
+
+    /**
+     * Create a journal from the wrapper configuration.
+     *
+     * @return the journal, or null if not configured
+     */
+    public static DecisionJournal fromConfig(MP_MinecraftWrapper wrapper) throws IOException {
+        String path = MP_MinecraftWrapper.config.getProperty("decision_journal", "").trim();
+        return path.isEmpty() ? null : new DecisionJournal(wrapper, new File(path));
+    }
+
+    /**
+     * Append a decision.
+     *
+     * @param type the decision
+     * @param playerId the player, or null if not known
+     * @param name the player name, or null
+     * @param value decision detail such as a game mode, or -1
+     */
+    public synchronized void record(Type type, UUID playerId, String name, int value) {
+        if (buffer == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (position + RECORD_SIZE > buffer.capacity() || now - fileStarted > ROTATE_AGE) {
+            try {
+                rotate(now);
+            } catch (IOException e) {
+                wrapper.getLogger().error("Decision journal disabled: ".concat(String.valueOf(e.getMessage())), this);
+                close();
+                return;
+            }
+        }
+
+        Arrays.fill(nameBuffer, (byte) 0);
+        if (name != null) {
+            for (int i = 0; i < name.length() && i < NAME_LENGTH; i++) {
+                char c = name.charAt(i);
+                nameBuffer[i] = (byte) (c < 128 ? c : '?');
+            }
+        }
+
+        // Time is written last, as it marks the record as present.
+        buffer.putLong(position + 8, playerId != null ? playerId.getMostSignificantBits() : 0);
+        buffer.putLong(position + 16, playerId != null ? playerId.getLeastSignificantBits() : 0);
+        buffer.put(position + 24, (byte) type.ordinal());
+        buffer.put(position + 25, (byte) value);
+        buffer.position(position + NAME_OFFSET);
+        buffer.put(nameBuffer);
+        buffer.putLong(position, now);
+        position += RECORD_SIZE;
+        written++;
+    }
+
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    public synchronized void close() {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Ignore.
+            }
+            file = null;
+        }
+    }
+
+    private void rotate(long now) throws IOException {
+        close();
+
+        File next = new File(directory, FILE_PREFIX + now + FILE_SUFFIX);
+        file = new RandomAccessFile(next, "rw");
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) RECORDS_PER_FILE * RECORD_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        fileStarted = now;
+        position = HEADER_SIZE;
+
+        File[] files = listFiles(directory);
+        for (int i = 0; i < files.length - KEEP_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    /**
+     * List journal files in a directory, oldest first.
+     */
+    static File[] listFiles(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(fileTime(a), fileTime(b));
+            }
+        });
+        return files;
+    }
+
+    private static long fileTime(File f) {
+        String n = f.getName();
+        try {
+            return Long.parseLong(n.substring(FILE_PREFIX.length(), n.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Decode the player name field of a record.
+     */
+    static String readName(ByteBuffer b, int recordStart) {
+        int len = 0;
+        while (len < NAME_LENGTH && b.get(recordStart + NAME_OFFSET + len) != 0) {
+            len++;
+        }
+        byte[] raw = new byte[len];
+        for (int i = 0; i < len; i++) {
+            raw[i] = b.get(recordStart + NAME_OFFSET + i);
+        }
+        return new String(raw, StandardCharsets.US_ASCII);
+    }
+}
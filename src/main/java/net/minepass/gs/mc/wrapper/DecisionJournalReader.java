@@ -0,0 +1,150 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Command line reader for the decision journal.
+ * <p/>
+ * Streams records as tab-separated lines (time, decision, UUID, name, value),
+ * oldest first, optionally filtered by decision type, player and time.
+ * <pre>
+ * java -cp MinePass-MinecraftWrapper.jar net.minepass.gs.mc.wrapper.DecisionJournalReader
+ *      [-type KICK_ISSUED] [-player name|uuid] [-since epochMillis] [-until epochMillis]
+ *      journal-directory-or-file...
+ * </pre>
+ *
+ * @see DecisionJournal
+ */
+public class DecisionJournalReader {
+
+    private DecisionJournal.Type type = null;
+    private String player = null;
+    private long since = 0;
+    private long until = Long.MAX_VALUE;
+    private long matched = 0;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+    public static void main(String[] args) {
+        DecisionJournalReader reader = new DecisionJournalReader();
+        boolean sources = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-type":
+                        reader.type = DecisionJournal.Type.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "-player":
+                        reader.player = args[++i];
+                        break;
+                    case "-since":
+                        reader.since = Long.parseLong(args[++i]);
+                        break;
+                    case "-until":
+                        reader.until = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        sources = true;
+                        reader.read(new File(args[i]), System.out);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("Invalid arguments: " + e.getMessage());
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Could not read journal: " + e.getMessage());
+            System.exit(1);
+        }
+
+        if (!sources) {
+            System.err.println("Usage: DecisionJournalReader [-type TYPE] [-player NAME|UUID] [-since MILLIS] [-until MILLIS] PATH...");
+            System.exit(2);
+        }
+        System.err.println(reader.matched + " records");
+    }
+
+    void read(File source, PrintStream out) throws IOException {
+        if (source.isDirectory()) {
+            for (File f : DecisionJournal.listFiles(source)) {
+                readFile(f, out);
+            }
+        } else {
+            readFile(source, out);
+        }
+    }
+
+    private void readFile(File f, PrintStream out) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            MappedByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            if (b.capacity() < DecisionJournal.HEADER_SIZE || b.getInt(0) != DecisionJournal.MAGIC) {
+                throw new IOException(f + " is not a decision journal");
+            }
+            int recordSize = b.getInt(8);
+            DecisionJournal.Type[] types = DecisionJournal.Type.values();
+
+            for (int p = DecisionJournal.HEADER_SIZE; p + recordSize <= b.capacity(); p += recordSize) {
+                long time = b.getLong(p);
+                if (time == 0) {
+                    break;  // end of written records
+                }
+                if (time < since || time > until) {
+                    continue;
+                }
+
+                int t = b.get(p + 24);
+                DecisionJournal.Type recordType = t >= 0 && t < types.length ? types[t] : null;
+                if (type != null && recordType != type) {
+                    continue;
+                }
+
+                long msb = b.getLong(p + 8);
+                long lsb = b.getLong(p + 16);
+                String uuid = msb != 0 || lsb != 0 ? new UUID(msb, lsb).toString() : "-";
+                String name = DecisionJournal.readName(b, p);
+                if (player != null && !player.equalsIgnoreCase(name) && !player.equalsIgnoreCase(uuid)) {
+                    continue;
+                }
+
+                matched++;
+                out.append(dateFormat.format(new Date(time))).append('\t')
+                        .append(recordType != null ? recordType.name() : String.valueOf(t)).append('\t')
+                        .append(uuid).append('\t')
+                        .append(name.isEmpty() ? "-" : name).append('\t')
+                        .append(String.valueOf(b.get(p + 25))).append('\n');
+            }
+        }
+    }
+}
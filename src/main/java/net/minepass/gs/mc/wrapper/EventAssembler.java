@@ -0,0 +1,142 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.ArrayList;
+
+/**
+ * Tracks multi-line events held by parsers, per logging thread.
+ * <p/>
+ * When a parser returns HOLD, further lines from the same thread are
+ * offered to it first. Lines it claims are buffered (up to the parser's
+ * line limit) and lines it does not claim still reach the normal parsers.
+ * <p/>
+ * Each hold has a deadline. Holds that run past it, or that claim more
+ * lines than allowed, are dropped and the parser is notified, so a
+ * missing terminating line (e.g. "Done" after a crashed start) can no
+ * longer capture a thread forever.
+ * <p/>
+ * Holds are few and matched against the thread name slice in place, so
+ * offering a line does not allocate. A String is only made when a hold
+ * starts. Only used from the Server Manager thread.
+ *
+ * @see EventParser#continuedInput(String)
+ * @see ServerManager
+ */
+public class EventAssembler {
+
+    private static final class Hold {
+        final String threadName;
+        final EventParser parser;
+        final long deadline;
+        final int lineLimit;
+        final ArrayList<String> lines = new ArrayList<>();
+
+        Hold(String threadName, EventParser parser, long now) {
+            this.threadName = threadName;
+            this.parser = parser;
+            this.deadline = now + parser.getHoldTimeout();
+            this.lineLimit = parser.getHoldLineLimit();
+        }
+    }
+
+    private final ArrayList<Hold> holds = new ArrayList<>();
+
+    public void hold(String threadName, EventParser parser) {
+        int i = find(threadName);
+        if (i >= 0) {
+            holds.remove(i);
+        }
+        holds.add(new Hold(threadName, parser, System.currentTimeMillis()));
+    }
+
+    public boolean isEmpty() {
+        return holds.isEmpty();
+    }
+
+    /**
+     * Offer a line to the event held on its thread, if any.
+     *
+     * @return true if the line was claimed by the held event, false if it
+     *         should be dispatched to the normal parsers
+     */
+    public boolean offer(CharSequence threadName, CharSequence message) {
+        int i = find(threadName);
+        if (i < 0) {
+            return false;
+        }
+        Hold h = holds.get(i);
+
+        switch (h.parser.acceptLogMessage(message, true)) {
+            case HOLD:
+                if (h.lines.size() >= h.lineLimit) {
+                    holds.remove(h);
+                    h.parser.holdExpired("line limit of " + h.lineLimit + " reached");
+                } else {
+                    h.lines.add(message.toString());
+                }
+                return true;
+            case HANDLED:
+                holds.remove(h);
+                h.parser.eventAssembled(h.lines);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Drop holds past their deadline, notifying their parsers.
+     */
+    public void expire(long now) {
+        if (holds.isEmpty()) {
+            return;
+        }
+
+        for (int i = holds.size() - 1; i >= 0; i--) {
+            Hold h = holds.get(i);
+            if (now > h.deadline) {
+                holds.remove(i);
+                h.parser.holdExpired("timed out");
+            }
+        }
+    }
+
+    private int find(CharSequence threadName) {
+        for (int i = 0; i < holds.size(); i++) {
+            if (CharSlice.contentEquals(threadName, holds.get(i).threadName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Drop all holds, e.g. once the server has stopped.
+     */
+    public void clear() {
+        holds.clear();
+    }
+}
@@ -24,6 +24,8 @@
 
 package net.minepass.gs.mc.wrapper;
 
+import java.util.List;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,10 +36,16 @@ import java.util.regex.Pattern;
  * Each parser has a primary pattern, as well as filters
  * for thread name and log level.
  *
+ * Log fields are passed as views into a reusable line buffer
+ * and are only valid during the call. Parsers should extract
+ * names and UUIDs through #groupName and #groupUUID, which
+ * avoid copying for names already seen.
+ *
  * Logged output that may span multiple lines can be handled by
  * returning the HOLD status from the primary pattern, after
  * which the Server Manager will continue to pass input from
- * the matching thread until told to stop.
+ * the matching thread until told to stop, the hold times out,
+ * or its line limit is reached.
  *
  * IMPORTANT: At this time any MinePass actions are performed
  * by the parsers themselves. This will likely eventually be
@@ -45,6 +53,7 @@ import java.util.regex.Pattern;
  * and to potentially support other plugins.
  *
  * @see ServerManager
+ * @see EventAssembler
  * @see #run(Matcher)
  * @see #continuedInput(String)
  */
@@ -56,22 +65,32 @@ public abstract class EventParser {
 
     protected MP_MinecraftWrapper wrapper;
     protected Pattern pattern;
+    private Matcher matcher;
+    private CharSequence input;
 
     public EventParser(MP_MinecraftWrapper wrapper) {
         this.wrapper = wrapper;
-        pattern = Pattern.compile(getPatternString(wrapper.getState().minecraftVersion));
+        compilePattern(wrapper.getState().minecraftVersion);
     }
 
-    public Status acceptLogMessage(String logMessage, boolean continued) {
+    /**
+     * Compile the primary pattern for the given Minecraft version.
+     * Called again by the registry once the version has been detected.
+     *
+     * @param minecraftVersion the server version, or null if not yet known
+     */
+    void compilePattern(String minecraftVersion) {
+        pattern = Pattern.compile(getPatternString(minecraftVersion));
+        matcher = pattern.matcher("");
+    }
+
+    public Status acceptLogMessage(CharSequence logMessage, boolean continued) {
         if (continued) {
-            if (continuedInput(logMessage)) {
-                return Status.HOLD;
-            } else {
-                return Status.HANDLED;
-            }
+            return continuedInput(logMessage);
         }
 
-        Matcher m = pattern.matcher(logMessage);
+        input = logMessage;
+        Matcher m = matcher.reset(logMessage);
         if (m.find()) {
             wrapper.getLogger().debug("Matched event parser.", this);
             return run(m);
@@ -79,12 +98,48 @@ public abstract class EventParser {
         return Status.IGNORED;
     }
 
-    public boolean filterLevel(String levelName) {
+    public boolean filterLevel(CharSequence levelName) {
         return true;
     }
 
-    public boolean filterThread(String threadName) {
-        return threadName.equalsIgnoreCase("server thread");
+    public boolean filterThread(CharSequence threadName) {
+        return CharSlice.equalsIgnoreCase(threadName, "server thread");
+    }
+
+    /**
+     * Literal text of which any line matched by this parser contains at
+     * least one, used to keep other lines out of the MinePass log queue.
+     * Lines needed by #continuedInput must be covered as well.
+     *
+     * @return the markers, or null if any line may match
+     * @see MinePassLogFilter
+     */
+    protected String[] getMessageMarkers() {
+        return null;
+    }
+
+    /**
+     * Anchored pattern for the lines of this parser that must never be
+     * shed under load. Lossless lines are also handled ahead of other
+     * queued lines, so the pattern should be strict enough that chat
+     * quoting an event cannot claim the priority lane.
+     *
+     * @return the pattern, or null if no lines are lossless
+     * @see LogQueue
+     */
+    protected Pattern getLosslessPattern() {
+        return null;
+    }
+
+    /**
+     * Whether a line is lossless for this parser in its current state.
+     * Called on the logging thread.
+     *
+     * @see #getLosslessPattern()
+     */
+    boolean isLosslessLine(CharSequence message) {
+        Pattern p = getLosslessPattern();
+        return p != null && isEnabled() && p.matcher(message).lookingAt();
     }
 
     protected CommonState getState() {
@@ -95,6 +150,22 @@ public abstract class EventParser {
         return wrapper.getServerManager();
     }
 
+    /**
+     * Get a named group of the current match as a pooled player name.
+     */
+    protected String groupName(Matcher m, String group) {
+        return getServerManager().getNamePool().intern(input, m.start(group), m.end(group));
+    }
+
+    /**
+     * Parse a named group of the current match as a UUID.
+     *
+     * @throws IllegalArgumentException if the group is not a valid UUID
+     */
+    protected UUID groupUUID(Matcher m, String group) {
+        return CharSlice.parseUUID(input, m.start(group), m.end(group));
+    }
+
     protected abstract String getPatternString(String minecraftVersion);
 
     protected abstract Status run(Matcher m);
@@ -102,13 +173,49 @@ public abstract class EventParser {
     /**
      * Executed (repeatedly) if #run returns Status.HOLD
      * Input will continue until this method returns
-     * as non-true value.
+     * Status.HANDLED.
+     *
+     * HOLD claims the line as part of the held event, while
+     * IGNORED keeps holding but lets the line reach the
+     * other parsers.
      *
      * @param logInput
      * @return
      */
-    protected boolean continuedInput(String logInput) {
-        return false;
+    protected Status continuedInput(CharSequence logInput) {
+        return Status.HANDLED;
+    }
+
+    /**
+     * Executed when a held event completes, with the lines
+     * claimed while holding.
+     *
+     * @param lines
+     */
+    protected void eventAssembled(List<String> lines) {
+    }
+
+    /**
+     * Executed if a held event is dropped before completing.
+     *
+     * @param reason
+     */
+    protected void holdExpired(String reason) {
+        wrapper.getLogger().warn("Dropped held event: ".concat(reason), this);
+    }
+
+    /**
+     * Maximum time to hold a thread, in milliseconds.
+     */
+    protected long getHoldTimeout() {
+        return 30000;
+    }
+
+    /**
+     * Maximum number of lines claimed while holding.
+     */
+    protected int getHoldLineLimit() {
+        return 100;
     }
 
     protected abstract boolean isEnabled();
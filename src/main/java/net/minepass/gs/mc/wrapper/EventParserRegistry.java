@@ -0,0 +1,180 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Holds the event parsers and an immutable array of those currently enabled.
+ * <p/>
+ * The active array is rebuilt and swapped whenever the server lifecycle
+ * changes (start, stop, version detected), so the Server Manager no longer
+ * has to check each parser's enabled state for every logged line.
+ * <p/>
+ * Active parsers are ordered by observed match frequency, so the most
+ * common events are tried first. Counters track how many parsers are tried
+ * per matched line, compared with the original registration order.
+ *
+ * @see ServerManager
+ * @see EventParser#isEnabled()
+ */
+public class EventParserRegistry {
+
+    static final int REORDER_INTERVAL = 4096;  // lines between order checks
+
+    /**
+     * Parser and its counters. Counters are only written by the dispatch thread.
+     */
+    public static final class Slot {
+        public final EventParser parser;
+        final int registrationIndex;
+        volatile long matches = 0;
+        int registrationPosition;  // 1-based position among active parsers in registration order
+
+        Slot(EventParser parser, int registrationIndex) {
+            this.parser = parser;
+            this.registrationIndex = registrationIndex;
+        }
+    }
+
+    private static final Comparator<Slot> byMatches = new Comparator<Slot>() {
+        @Override
+        public int compare(Slot a, Slot b) {
+            int c = Long.compare(b.matches, a.matches);
+            return c != 0 ? c : Integer.compare(a.registrationIndex, b.registrationIndex);
+        }
+    };
+
+    private final ArrayList<Slot> slots = new ArrayList<>();
+    private volatile Slot[] active = new Slot[0];
+
+    private int linesSinceReorder = 0;
+    private volatile long lines = 0;
+    private volatile long matchedLines = 0;
+    private volatile long triedPerMatch = 0;
+    private volatile long triedPerMatchRegistered = 0;
+
+    public synchronized void register(EventParser parser) {
+        slots.add(new Slot(parser, slots.size()));
+    }
+
+    /**
+     * Get the currently enabled parsers, most frequently matched first.
+     */
+    public Slot[] getActive() {
+        return active;
+    }
+
+    /**
+     * Rebuild the active parser array following a lifecycle change.
+     */
+    public synchronized void refresh() {
+        ArrayList<Slot> enabled = new ArrayList<>(slots.size());
+        for (Slot s : slots) {
+            if (s.parser.isEnabled()) {
+                s.registrationPosition = enabled.size() + 1;
+                enabled.add(s);
+            }
+        }
+
+        Slot[] a = enabled.toArray(new Slot[enabled.size()]);
+        Arrays.sort(a, byMatches);
+        active = a;
+
+        // The log filter uses all parsers, since lines are queued
+        // before the lifecycle change that enables their parser.
+        EventParser[] registered = new EventParser[slots.size()];
+        for (int i = 0; i < registered.length; i++) {
+            registered[i] = slots.get(i).parser;
+        }
+        MinePassLogFilter.setParsers(registered);
+    }
+
+    /**
+     * Recompile parser patterns for a newly detected Minecraft version, then refresh.
+     *
+     * @param minecraftVersion the detected version
+     */
+    public synchronized void versionDetected(String minecraftVersion) {
+        for (Slot s : slots) {
+            s.parser.compilePattern(minecraftVersion);
+        }
+        refresh();
+    }
+
+    /**
+     * Record the outcome of dispatching a line.
+     *
+     * @param matched the slot that handled the line, or null
+     * @param tried the number of parsers whose pattern was evaluated
+     */
+    public void recordLine(Slot matched, int tried) {
+        lines++;
+        if (matched != null) {
+            matched.matches++;
+            matchedLines++;
+            triedPerMatch += tried;
+            triedPerMatchRegistered += matched.registrationPosition;
+        }
+
+        if (++linesSinceReorder >= REORDER_INTERVAL) {
+            linesSinceReorder = 0;
+            if (!isOrdered()) {
+                refresh();
+            }
+        }
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getMatchedLines() {
+        return matchedLines;
+    }
+
+    public String getStatsSummary() {
+        long matched = matchedLines;
+        if (matched == 0) {
+            return String.format("Event parsers: %d lines, no matches", lines);
+        }
+        return String.format(
+                "Event parsers: %d lines, %d matched, %.2f parsers tried per match (%.2f in registration order)",
+                lines, matched, (double) triedPerMatch / matched, (double) triedPerMatchRegistered / matched
+        );
+    }
+
+    private boolean isOrdered() {
+        Slot[] a = active;
+        for (int i = 1; i < a.length; i++) {
+            if (byMatches.compare(a[i - 1], a[i]) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
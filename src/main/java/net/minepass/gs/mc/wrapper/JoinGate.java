@@ -0,0 +1,169 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Early join decisions for players whose pass does not permit access.
+ * <p/>
+ * Passes are resolved by the PassCache as soon as the authenticator
+ * reports a player, well before the "logged in with entity" line.
+ * When the resolved pass denies access the player is marked here, and
+ * the login parser hands them over instead of looking up the pass again
+ * and dispatching login commands. The kick still waits for the login to
+ * settle, but on a timer, so the parser thread is free for other joins.
+ * <p/>
+ * The vanilla server offers no console hook between authentication and
+ * world join, so the login line is the earliest point a kick can land.
+ * Unregistered players (no pass at all) are not rejected here, since they
+ * are either blocked by the whitelist or deliberately allowed when
+ * [enforce_whitelist]=false.
+ *
+ * @see PassCache
+ * @see net.minepass.gs.mc.wrapper.parsers.PlayerLoginEventParser
+ */
+public class JoinGate implements PassCache.Listener {
+
+    static final long DECISION_EXPIRY = 60000;
+    static final long LOGIN_SETTLE_TIME = 1500;  // as in the login parser, avoids a Broken Pipe on the client
+
+    private final MP_MinecraftWrapper wrapper;
+    private final ScheduledExecutorService kicks;
+
+    /**
+     * Rejected player names mapped to the time of the decision.
+     */
+    private final ConcurrentHashMap<String, Long> rejectedNames = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong totalLeadTime = new AtomicLong();
+
+    public JoinGate(final MP_MinecraftWrapper wrapper) {
+        this.wrapper = wrapper;
+        this.kicks = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "MinePass Gate");
+                t.setDaemon(true);
+                wrapper.getResourceMonitor().register(t, ResourceMonitor.Subsystem.PARSERS);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Cancel pending kicks, for shutdown.
+     */
+    public void shutdown() {
+        kicks.shutdownNow();
+    }
+
+    @Override
+    public void passResolved(UUID uuid, PlayerPrivileges privileges) {
+        if (privileges == null || privileges.permitsAccess()) {
+            return;
+        }
+
+        String name = wrapper.getState().players.getAuthName(uuid);
+        if (name != null) {
+            long now = System.currentTimeMillis();
+            if (rejectedNames.size() > 0) {
+                evictExpired(now);
+            }
+            rejectedNames.put(name, now);
+            wrapper.getLogger().debug("Early rejection queued for player ".concat(name), this);
+        }
+    }
+
+    /**
+     * Kick a player once their login settles, if an early decision was made
+     * to reject them.
+     *
+     * @param name the player name from the login event
+     * @return true if the player was rejected
+     */
+    public boolean rejectOnLogin(final String name) {
+        Long decided = rejectedNames.remove(name);
+        if (decided == null) {
+            return false;
+        }
+
+        long leadTime = System.currentTimeMillis() - decided;
+        if (leadTime > DECISION_EXPIRY) {
+            return false;
+        }
+
+        kicks.schedule(new Runnable() {
+            @Override
+            public void run() {
+                wrapper.getServerManager().kickPlayer(name, "Your current MinePass does not permit access to this server.");
+                wrapper.getServerManager().getJoinTracer().complete(
+                        wrapper.getState().players.getAuthUUID(name), JoinTracer.Stage.GAMEMODE_OR_KICK
+                );
+            }
+        }, LOGIN_SETTLE_TIME, TimeUnit.MILLISECONDS);
+
+        long count = rejections.incrementAndGet();
+        long totalLead = totalLeadTime.addAndGet(leadTime);
+        wrapper.getLogger().info(String.format(
+                "Early rejection of %s (decided %dms before login, %d rejected, avg lead %dms)",
+                name, leadTime, count, totalLead / count
+        ), this);
+        return true;
+    }
+
+    /**
+     * Drop pending decisions, e.g. after new authorization data has been synced.
+     */
+    public void reset() {
+        rejectedNames.clear();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public long getTotalLeadTime() {
+        return totalLeadTime.get();
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Long>> i = rejectedNames.entrySet().iterator();
+        while (i.hasNext()) {
+            if (now - i.next().getValue() > DECISION_EXPIRY) {
+                i.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lightweight per-player tracing of the join lifecycle.
+ * <p/>
+ * Each join is traced from the authenticator event through the login
+ * event, pass lookup, privilege commands, game mode or kick, up to the
+ * first ScheduledTasks check that sees the player. Completed traces are
+ * kept in a fixed-size ring buffer, and the time spent in each stage
+ * (since the previous recorded stage) is added to a histogram per stage.
+ *
+ * @see LatencyHistogram
+ */
+public class JoinTracer {
+
+    public enum Stage {
+        AUTHENTICATED, LOGIN, PASS_LOOKUP, PRIVILEGE_COMMANDS, GAMEMODE_OR_KICK, FIRST_TASK_CHECK
+    }
+
+    static final int RING_SIZE = 1024;
+    static final int MAX_ACTIVE = 4096;
+    static final long ACTIVE_EXPIRY = 300000;  // authenticated but never joined
+
+    private static final Stage[] stages = Stage.values();
+
+    public static final class Trace {
+        public final UUID uuid;
+        final long[] at = new long[stages.length];  // 0 if the stage was not reached
+
+        Trace(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        public long getTime(Stage stage) {
+            return at[stage.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(uuid.toString());
+            long start = at[0];
+            for (Stage s : stages) {
+                long t = at[s.ordinal()];
+                if (t != 0) {
+                    sb.append(' ').append(s.name().toLowerCase()).append("=+").append(t - start).append("ms");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private final ConcurrentHashMap<UUID, Trace> active = new ConcurrentHashMap<>();
+    private final Trace[] ring = new Trace[RING_SIZE];
+    private long ringCount = 0;
+    private final LatencyHistogram[] stageTime = new LatencyHistogram[stages.length];
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    public JoinTracer() {
+        for (int i = 0; i < stages.length; i++) {
+            stageTime[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Record that a player reached a stage. Authentication starts a new trace.
+     */
+    public void mark(UUID uuid, Stage stage) {
+        if (uuid == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Trace t;
+        if (stage == Stage.AUTHENTICATED) {
+            if (active.size() >= MAX_ACTIVE) {
+                evictStale(now);
+            }
+            t = new Trace(uuid);
+            active.put(uuid, t);
+        } else if ((t = active.get(uuid)) == null) {
+            return;
+        }
+
+        synchronized (t) {
+            if (t.at[stage.ordinal()] == 0) {
+                t.at[stage.ordinal()] = now;
+            }
+        }
+    }
+
+    /**
+     * Record the final stage and move the trace to the ring buffer.
+     */
+    public void complete(UUID uuid, Stage stage) {
+        mark(uuid, stage);
+        Trace t = active.remove(uuid);
+        if (t == null) {
+            return;
+        }
+
+        synchronized (t) {
+            long previous = t.at[0];
+            for (int i = 1; i < stages.length; i++) {
+                if (t.at[i] != 0) {
+                    stageTime[i].record(t.at[i] - previous);
+                    previous = t.at[i];
+                }
+            }
+            total.record(previous - t.at[0]);
+        }
+
+        synchronized (ring) {
+            ring[(int) (ringCount++ % RING_SIZE)] = t;
+        }
+    }
+
+    public boolean hasActiveTraces() {
+        return !active.isEmpty();
+    }
+
+    public LatencyHistogram getStageTime(Stage stage) {
+        return stageTime[stage.ordinal()];
+    }
+
+    public LatencyHistogram getTotalTime() {
+        return total;
+    }
+
+    /**
+     * Get up to the given number of completed traces, most recent first.
+     */
+    public List<Trace> getRecent(int limit) {
+        ArrayList<Trace> recent = new ArrayList<>();
+        synchronized (ring) {
+            for (long i = ringCount - 1; i >= 0 && i >= ringCount - RING_SIZE && recent.size() < limit; i--) {
+                recent.add(ring[(int) (i % RING_SIZE)]);
+            }
+        }
+        return recent;
+    }
+
+    private void evictStale(long now) {
+        Iterator<Map.Entry<UUID, Trace>> i = active.entrySet().iterator();
+        while (i.hasNext()) {
+            if (now - i.next().getValue().at[0] > ACTIVE_EXPIRY) {
+                i.remove();
+            }
+        }
+    }
+}
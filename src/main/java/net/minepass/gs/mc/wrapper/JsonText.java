@@ -0,0 +1,162 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.Objects;
+
+/**
+ * Minimal builder for Minecraft JSON text components, as used by tellraw.
+ * <p/>
+ * Text and URLs are escaped as JSON strings, so quotes or backslashes in
+ * a message can no longer break the command. Builders write into a single
+ * reusable buffer; obtain one per thread via {@link #local()}.
+ * <p/>
+ * Components that never change (e.g. the MinePass join hint) can be
+ * pre-rendered once with {@link Template} and appended as-is.
+ *
+ * @see ServerManager#tellPlayerRaw(String, CharSequence)
+ */
+public final class JsonText {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<JsonText> local = new ThreadLocal<JsonText>() {
+        @Override
+        protected JsonText initialValue() {
+            return new JsonText();
+        }
+    };
+
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    /**
+     * Get this thread's reusable builder, reset and opened as a component list.
+     */
+    public static JsonText local() {
+        return local.get().begin();
+    }
+
+    public JsonText begin() {
+        buffer.setLength(0);
+        buffer.append("[\"\"");
+        return this;
+    }
+
+    public JsonText text(String text, String color) {
+        buffer.append(",{\"text\":\"");
+        escape(text, buffer);
+        buffer.append("\",\"color\":\"").append(color).append("\"}");
+        return this;
+    }
+
+    public JsonText link(String text, String color, String url) {
+        buffer.append(",{\"text\":\"");
+        escape(text, buffer);
+        buffer.append("\",\"color\":\"").append(color);
+        buffer.append("\",\"clickEvent\":{\"action\":\"open_url\",\"value\":\"");
+        escape(url, buffer);
+        buffer.append("\"}}");
+        return this;
+    }
+
+    /**
+     * Append pre-rendered components, including the leading comma.
+     */
+    public JsonText append(CharSequence rendered) {
+        buffer.append(rendered);
+        return this;
+    }
+
+    /**
+     * Close the component list, returning the rendered JSON.
+     * <p/>
+     * The result is a view of the reusable buffer and is only
+     * valid until the builder is used again.
+     */
+    public CharSequence end() {
+        buffer.append(']');
+        return buffer;
+    }
+
+    /**
+     * Append a value escaped as the contents of a JSON string.
+     */
+    public static void escape(CharSequence value, StringBuilder out) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+    }
+
+    /**
+     * A link component with fixed text, rendered once per distinct URL.
+     */
+    public static final class Template {
+        private final String text;
+        private final String color;
+        private volatile String[] cache = {null, null};  // url, rendered
+
+        public Template(String text, String color) {
+            this.text = text;
+            this.color = color;
+        }
+
+        public String render(String url) {
+            String[] c = cache;
+            if (c[1] == null || !Objects.equals(c[0], url)) {
+                JsonText t = new JsonText();
+                t.link(text, color, url);
+                c = new String[]{url, t.buffer.toString()};
+                cache = c;
+            }
+            return c[1];
+        }
+    }
+}
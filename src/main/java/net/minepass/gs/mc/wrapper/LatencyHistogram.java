@@ -0,0 +1,99 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power-of-two millisecond buckets.
+ * <p/>
+ * Bucket 0 holds latencies under 1ms, bucket n holds [2^(n-1), 2^n) ms.
+ * Percentiles are reported as the upper bound of the matching bucket,
+ * which is precise enough to tell where seconds are being spent.
+ * Longer latencies are counted in the last bucket.
+ */
+public final class LatencyHistogram {
+
+    private static final int DEFAULT_BUCKETS = 24;  // up to ~2.3 hours
+
+    private final int buckets;
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram() {
+        this(DEFAULT_BUCKETS);
+    }
+
+    /**
+     * @param buckets number of buckets, the last covering up to 2^(buckets-1) ms
+     */
+    public LatencyHistogram(int buckets) {
+        this.buckets = buckets;
+        this.counts = new AtomicLongArray(buckets);
+    }
+
+    public void record(long millis) {
+        int bucket = millis <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+        counts.incrementAndGet(Math.min(bucket, buckets - 1));
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound in milliseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[buckets];
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return 1L << i;
+            }
+        }
+        return 1L << (buckets - 1);
+    }
+
+    public String summary() {
+        return String.format("n=%d p50<%dms p90<%dms p99<%dms",
+                getCount(), getPercentile(50), getPercentile(90), getPercentile(99));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+/**
+ * Reusable holder for a line from the MinePass log queue.
+ * <p/>
+ * Lines arrive in "THREAD|LEVEL|MESSAGE" format. The line is copied into
+ * a reusable character buffer and its fields are exposed as slices,
+ * replacing the String.split() copies previously made for every line.
+ * The message is everything after the second separator, so messages
+ * containing '|' are no longer truncated.
+ * <p/>
+ * Not threadsafe, intended for the Server Manager thread.
+ *
+ * @see CharSlice
+ */
+public final class LogLine {
+
+    private char[] buf = new char[256];
+    private final CharSlice thread = new CharSlice();
+    private final CharSlice level = new CharSlice();
+    private final CharSlice message = new CharSlice();
+
+    /**
+     * Load a raw queue entry.
+     *
+     * @return false if the entry is not in the expected format
+     */
+    public boolean set(String raw) {
+        int n = raw.length();
+        if (buf.length < n) {
+            buf = new char[Math.max(n, buf.length * 2)];
+        }
+        raw.getChars(0, n, buf, 0);
+
+        int first = indexOf('|', 0, n);
+        int second = first < 0 ? -1 : indexOf('|', first + 1, n);
+        if (second < 0) {
+            return false;
+        }
+
+        thread.set(buf, 0, first);
+        level.set(buf, first + 1, second);
+        message.set(buf, second + 1, n);
+        return true;
+    }
+
+    public CharSlice getThread() {
+        return thread;
+    }
+
+    public CharSlice getLevel() {
+        return level;
+    }
+
+    public CharSlice getMessage() {
+        return message;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
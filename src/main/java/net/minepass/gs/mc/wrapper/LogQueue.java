@@ -0,0 +1,141 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of server log lines awaiting the event parsers, with an overload policy.
+ * <p/>
+ * Lossless lines (lifecycle, authentication, login and logout) are taken
+ * ahead of all other lines. Other lines are shed once the bulk backlog
+ * reaches its high-water mark, so memory use and the delay before a login
+ * is handled stay bounded when the server floods its log.
+ * <p/>
+ * Lossless lines are only dropped past PRIORITY_LIMIT, which real events
+ * should never reach, and are counted separately.
+ *
+ * @see MinePassQueueAppender
+ * @see EventParser#getLosslessPattern()
+ */
+public class LogQueue {
+
+    static final int BULK_HIGH_WATER = 1000;
+    static final int PRIORITY_LIMIT = 2000;
+
+    private final ConcurrentLinkedQueue<String> priority = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> bulk = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger priorityDepth = new AtomicInteger();
+    private final AtomicInteger bulkDepth = new AtomicInteger();
+    private final Semaphore available = new Semaphore(0);
+
+    private final AtomicLong priorityCount = new AtomicLong();
+    private final AtomicLong bulkCount = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong priorityDropped = new AtomicLong();
+    private volatile int maxBulkDepth = 0;
+
+    /**
+     * Add a line, called on the logging thread.
+     *
+     * @param line the formatted line
+     * @param lossless true if the line must not be dropped
+     * @return false if the line was shed
+     */
+    public boolean offer(String line, boolean lossless) {
+        if (lossless) {
+            if (priorityDepth.incrementAndGet() > PRIORITY_LIMIT) {
+                priorityDepth.decrementAndGet();
+                priorityDropped.incrementAndGet();
+                return false;
+            }
+            priority.add(line);
+            priorityCount.incrementAndGet();
+        } else {
+            int depth = bulkDepth.incrementAndGet();
+            if (depth > BULK_HIGH_WATER) {
+                bulkDepth.decrementAndGet();
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (depth > maxBulkDepth) {
+                maxBulkDepth = depth;
+            }
+            bulk.add(line);
+            bulkCount.incrementAndGet();
+        }
+        available.release();
+        return true;
+    }
+
+    /**
+     * Take the next line, lossless lines first.
+     *
+     * @param timeout maximum wait in milliseconds
+     * @return the line, or null if none arrived in time
+     */
+    public String poll(long timeout) throws InterruptedException {
+        if (!available.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            return null;
+        }
+
+        String line = priority.poll();
+        if (line != null) {
+            priorityDepth.decrementAndGet();
+        } else {
+            line = bulk.poll();
+            bulkDepth.decrementAndGet();
+        }
+        return line;
+    }
+
+    public int getDepth() {
+        return available.availablePermits();
+    }
+
+    public int getMaxBulkDepth() {
+        return maxBulkDepth;
+    }
+
+    public long getPriorityCount() {
+        return priorityCount.get();
+    }
+
+    public long getBulkCount() {
+        return bulkCount.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getPriorityDropped() {
+        return priorityDropped.get();
+    }
+}
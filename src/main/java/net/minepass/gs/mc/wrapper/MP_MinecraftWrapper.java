@@ -76,6 +76,13 @@ public class MP_MinecraftWrapper {
     // ------------------------------------------------------------------------------------------------------------- //
 
     public static void main(String[] args) {
+        int status = ClassDataSharing.launch(args);
+        if (status >= 0) {
+            System.exit(status);
+        }
+
+        selectLoggingProfile();
+
         ArrayList<String> serverArgs = new ArrayList<>();
         serverArgs.add("nogui");  // GUI mode seems to create logging intercept issues
 
@@ -106,16 +113,45 @@ public class MP_MinecraftWrapper {
         }
     }
 
+    /**
+     * Point log4j at the configured logging profile.
+     * <p/>
+     * Must run before log4j is first initialized. An explicit
+     * -Dlog4j.configurationFile always takes precedence.
+     */
+    private static void selectLoggingProfile() {
+        String profile = config.getProperty("logging_profile", "default").trim();
+        if (profile.equals("default") || System.getProperty("log4j.configurationFile") != null) {
+            return;
+        }
+
+        if (profile.equals("performance")) {
+            System.setProperty("log4j.configurationFile", "log4j2-performance.xml");
+            try {
+                Class.forName("com.lmax.disruptor.RingBuffer");
+                System.setProperty("Log4jContextSelector", "org.apache.logging.log4j.core.async.AsyncLoggerContextSelector");
+            } catch (ClassNotFoundException e) {
+                // Async appenders only.
+            }
+        } else {
+            System.out.println("WARNING: Unknown logging_profile " + profile + ", using default");
+        }
+    }
+
     // Wrapper Instance
     // ------------------------------------------------------------------------------------------------------------- //
 
     private TxLog logger;
-    private Boolean debug;
+    private volatile Boolean debug;
+    private volatile boolean enforceWhitelist;
+    private MPConfig minepassConfig;
     private String wrapperVersion;
     private File serverJarFile;
     private MinePassMC minepass;
     private ConsoleManager consoleManager;
     private ServerManager serverManager;
+    private ControlServer controlServer;
+    private ResourceMonitor resourceMonitor;
     private final CommonState state = new CommonState();
 
     public MP_MinecraftWrapper() {
@@ -132,6 +168,23 @@ public class MP_MinecraftWrapper {
         TxLog.log(TxLog.Level.INFO, String.format("MinePass Wrapper (%s) for Minecraft", wrapperVersion));
     }
 
+    /**
+     * Wrap an already configured MinePass instance, without a vanilla server.
+     * <p/>
+     * Used by the load generator, which plays the part of the server by
+     * logging to the MinePass queue and reading commands from System.in.
+     *
+     * @param minepass the MinePass instance
+     */
+    public MP_MinecraftWrapper(MinePassMC minepass) {
+        this.wrapperVersion = properties.getProperty("version");
+        this.minepass = minepass;
+        this.logger = minepass.log;
+        this.debug = TxStack.debug;
+        this.enforceWhitelist = minepass.getEnforceWhitelist();
+        minepass.setContext(this);
+    }
+
     /**
      * Ensure MinePass has a valid configuration and perform an initial sync if needed.
      * <p/>
@@ -159,6 +212,7 @@ public class MP_MinecraftWrapper {
             mtc.server_uuid = config.getProperty("setup_server_id");
             mtc.server_secret = config.getProperty("setup_server_secret");
             mtc.enforce_whitelist = !config.getProperty("enforce_whitelist", "true").equalsIgnoreCase("false");
+            this.minepassConfig = mtc;
 
             /**
              * The MinePass network stack is built upon SolidTX, an MIT licensed project
@@ -173,6 +227,7 @@ public class MP_MinecraftWrapper {
              */
             this.minepass = new MinePassMC(mtc);
             this.logger = minepass.log;
+            this.enforceWhitelist = minepass.getEnforceWhitelist();
             minepass.setContext(this);
 
             logger.info("MinePass Core Version: " + minepass.getVersion(), null);
@@ -199,21 +254,59 @@ public class MP_MinecraftWrapper {
      *
      * @see ConsoleManager
      * @see ServerManager
+     * @see ControlServer
+     * @see ConfigWatcher
+     * @see ResourceMonitor
      */
-    private void launchManagers() {
+    public void launchManagers() {
         if (minepass == null) {
             return;
         }
 
+        this.resourceMonitor = new ResourceMonitor(this);
+        Thread monitorThread = new Thread(resourceMonitor, "MinePass Monitor");
+        monitorThread.setDaemon(true);
+        resourceMonitor.register(monitorThread, ResourceMonitor.Subsystem.MONITOR);
+        monitorThread.start();
+
         this.consoleManager = new ConsoleManager(this);
         Thread consoleThread = new Thread(consoleManager, "MPConsole");
         consoleThread.setDaemon(true);
+        resourceMonitor.register(consoleThread, ResourceMonitor.Subsystem.COMMANDS);
         consoleThread.start();
 
+        Thread commandThread = new Thread(consoleManager.getCommandFeeder(), "MPCommands");
+        commandThread.setDaemon(true);
+        resourceMonitor.register(commandThread, ResourceMonitor.Subsystem.COMMANDS);
+        commandThread.start();
+
         this.serverManager = new ServerManager(this);
         Thread controlThread = new Thread(serverManager, "MinePass");
         controlThread.setDaemon(true);
+        resourceMonitor.register(controlThread, ResourceMonitor.Subsystem.PARSERS);
         controlThread.start();
+
+        try {
+            Thread configThread = new Thread(new ConfigWatcher(this, new File(configFileName)), "MinePass Config");
+            configThread.setDaemon(true);
+            resourceMonitor.register(configThread, ResourceMonitor.Subsystem.CONFIG);
+            configThread.start();
+        } catch (IOException e) {
+            logger.warn("Could not watch " + configFileName + " for changes: " + e.getMessage(), this);
+        }
+
+        try {
+            this.controlServer = ControlServer.fromConfig(this);
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Could not open control socket: ".concat(String.valueOf(e.getMessage())), this);
+        }
+        if (controlServer != null) {
+            Thread controlServerThread = new Thread(controlServer, "MPControl");
+            controlServerThread.setDaemon(true);
+            resourceMonitor.register(controlServerThread, ResourceMonitor.Subsystem.CONTROL);
+            controlServerThread.start();
+            logger.info("Control socket listening on ".concat(controlServer.getAddress()), this);
+        }
     }
 
     /**
@@ -261,6 +354,14 @@ public class MP_MinecraftWrapper {
         return serverManager;
     }
 
+    public ControlServer getControlServer() {
+        return controlServer;
+    }
+
+    public ResourceMonitor getResourceMonitor() {
+        return resourceMonitor;
+    }
+
     public CommonState getState() {
         return state;
     }
@@ -273,6 +374,28 @@ public class MP_MinecraftWrapper {
         return debug;
     }
 
+    void setDebug(boolean debug) {
+        this.debug = debug;
+        TxStack.debug = debug;
+    }
+
+    public boolean getEnforceWhitelist() {
+        return enforceWhitelist;
+    }
+
+    /**
+     * Change whitelist enforcement at runtime.
+     *
+     * @return true if the MinePass core picked up the change as well
+     */
+    boolean setEnforceWhitelist(boolean enforce) {
+        this.enforceWhitelist = enforce;
+        if (minepassConfig != null) {
+            minepassConfig.enforce_whitelist = enforce;
+        }
+        return minepass.getEnforceWhitelist() == enforce;
+    }
+
     // Configuration
     // ------------------------------------------------------------------------------------------------------------- //
 
@@ -0,0 +1,100 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Collects player warnings and sends each distinct message once.
+ * <p/>
+ * Recipients of the same rendered message are grouped, and every group is
+ * delivered through ServerManager#tellPlayersRaw, which uses target
+ * selectors to reach the whole group in as few commands as possible.
+ * A warning wave reaching all or most of a server therefore costs a
+ * handful of commands instead of one or two per player, smaller groups
+ * are still messaged per player.
+ * <p/>
+ * Batches are not threadsafe and are intended to be filled and sent
+ * by a single task run.
+ *
+ * @see ServerManager#newMessageBatch()
+ * @see ScheduledTasks
+ */
+public class MessageBatch {
+
+    private final ServerManager serverManager;
+    private final LinkedHashMap<String, LinkedHashSet<UUID>> groups = new LinkedHashMap<>();
+    private final LinkedHashMap<String, LinkedHashSet<UUID>> hints = new LinkedHashMap<>();  // sent after groups
+    private final JsonText json = new JsonText();
+
+    MessageBatch(ServerManager serverManager) {
+        this.serverManager = serverManager;
+    }
+
+    public void warnPlayer(UUID playerId, String message) {
+        add(groups, json.begin().text(message, "gold").end(), playerId);
+    }
+
+    public void warnPlayerPass(UUID playerId, String message, String joinUrl) {
+        add(groups, json.begin().link(message, "aqua", joinUrl).end(), playerId);
+        add(hints, json.begin().append(ServerManager.passHint.render(joinUrl)).end(), playerId);
+    }
+
+    public boolean isEmpty() {
+        return groups.isEmpty() && hints.isEmpty();
+    }
+
+    /**
+     * Send all collected messages and reset the batch.
+     *
+     * @return the number of distinct messages sent
+     */
+    public int send() {
+        int sent = send(groups) + send(hints);
+        groups.clear();
+        hints.clear();
+        return sent;
+    }
+
+    private int send(Map<String, LinkedHashSet<UUID>> messages) {
+        for (Map.Entry<String, LinkedHashSet<UUID>> message : messages.entrySet()) {
+            serverManager.tellPlayersRaw(message.getValue(), message.getKey());
+        }
+        return messages.size();
+    }
+
+    private static void add(Map<String, LinkedHashSet<UUID>> groups, CharSequence rendered, UUID playerId) {
+        String key = rendered.toString();
+        LinkedHashSet<UUID> recipients = groups.get(key);
+        if (recipients == null) {
+            recipients = new LinkedHashSet<>();
+            groups.put(key, recipients);
+        }
+        recipients.add(playerId);
+    }
+}
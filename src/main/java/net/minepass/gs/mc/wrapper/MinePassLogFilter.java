@@ -0,0 +1,198 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.filter.AbstractFilter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log4j filter for the MinePass queue appender, which only lets through
+ * lines that a registered event parser could match.
+ * <p/>
+ * Each parser is checked by thread name, level and its literal message
+ * markers, all of which are cheap compared with formatting and queueing
+ * the event, and with running the parser patterns later on. Chat and other
+ * noise never reach the queue.
+ * <p/>
+ * Until the parsers are published (i.e. before the Server Manager is
+ * created) every line is accepted.
+ * <p/>
+ * Accepted lines are also classified as lossless if an enabled parser's
+ * lossless pattern matches, and the result is handed to the queue appender
+ * on the same thread, so each line is only formatted and scanned once.
+ * <p/>
+ * As the filter sees every line, it also notes when the server thread
+ * last logged, as a heartbeat for the StallWatchdog.
+ *
+ * @see EventParser#getMessageMarkers()
+ * @see EventParser#getLosslessPattern()
+ * @see MinePassQueueAppender
+ * @see EventParserRegistry#refresh()
+ * @see StallWatchdog
+ */
+@Plugin(name = "MinePassFilter", category = "Core", elementType = "filter", printObject = true)
+public final class MinePassLogFilter extends AbstractFilter {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int DENIED = 0;
+    private static final int ACCEPTED = 1;
+    private static final int LOSSLESS = 2;
+
+    /**
+     * Classification of the last accepted event, per logging thread.
+     */
+    private static final class Classified {
+        LogEvent event;
+        boolean lossless;
+    }
+
+    private static final ThreadLocal<Classified> classified = new ThreadLocal<Classified>() {
+        @Override
+        protected Classified initialValue() {
+            return new Classified();
+        }
+    };
+
+    private static volatile EventParser[] parsers = null;
+    private static volatile long lastServerEvent = 0;
+
+    private static final LongAdder accepted = new LongAdder();
+    private static final LongAdder denied = new LongAdder();
+
+    private MinePassLogFilter(Result onMatch, Result onMismatch) {
+        super(onMatch, onMismatch);
+    }
+
+    /**
+     * Publish the parsers that queued lines will be offered to.
+     */
+    static void setParsers(EventParser[] registered) {
+        parsers = registered;
+    }
+
+    public static long getAccepted() {
+        return accepted.sum();
+    }
+
+    public static long getDenied() {
+        return denied.sum();
+    }
+
+    /**
+     * @return when the server thread last logged a line, in epoch millis
+     */
+    public static long getLastServerEvent() {
+        return lastServerEvent;
+    }
+
+    @Override
+    public Result filter(LogEvent event) {
+        if (StallWatchdog.SERVER_THREAD.equals(event.getThreadName())) {
+            lastServerEvent = System.currentTimeMillis();
+        }
+
+        EventParser[] p = parsers;
+        int result = p != null ? classify(p, event) : ACCEPTED;
+        if (result == DENIED) {
+            denied.increment();
+            return onMismatch;
+        }
+        accepted.increment();
+        Classified c = classified.get();
+        c.event = event;
+        c.lossless = result == LOSSLESS;
+        return onMatch;
+    }
+
+    /**
+     * Whether an event must not be shed, as classified when it was accepted.
+     * Events that did not pass through the filter are classified again.
+     */
+    static boolean isLossless(LogEvent event) {
+        Classified c = classified.get();
+        if (c.event == event) {
+            c.event = null;
+            return c.lossless;
+        }
+        EventParser[] p = parsers;
+        return p != null && classify(p, event) == LOSSLESS;
+    }
+
+    private static int classify(EventParser[] p, LogEvent event) {
+        String thread = event.getThreadName();
+        String level = event.getLevel().name();
+        String message = null;
+        int result = DENIED;
+
+        for (EventParser parser : p) {
+            if (!parser.filterThread(thread) || !parser.filterLevel(level)) {
+                continue;
+            }
+
+            String[] markers = parser.getMessageMarkers();
+            boolean marked = markers == null;
+            if (!marked) {
+                if (message == null) {
+                    message = event.getMessage().getFormattedMessage();
+                }
+                for (String marker : markers) {
+                    if (message.contains(marker)) {
+                        marked = true;
+                        break;
+                    }
+                }
+            }
+            if (!marked) {
+                continue;
+            }
+
+            result = ACCEPTED;
+            if (parser.getLosslessPattern() != null) {
+                if (message == null) {
+                    message = event.getMessage().getFormattedMessage();
+                }
+                if (parser.isLosslessLine(message)) {
+                    return LOSSLESS;
+                }
+            }
+        }
+        return result;
+    }
+
+    @PluginFactory
+    public static MinePassLogFilter createFilter(@PluginAttribute("onMatch") String match,
+                                                 @PluginAttribute("onMismatch") String mismatch) {
+        return new MinePassLogFilter(
+                Result.toResult(match, Result.NEUTRAL),
+                Result.toResult(mismatch, Result.DENY)
+        );
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.Layout;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+
+import java.io.Serializable;
+
+/**
+ * Log4j appender feeding the MinePass log queue.
+ * <p/>
+ * Replaces the Mojang QueueLogAppender, which clears its entire queue once
+ * full and so could discard a pending login along with the chat around it.
+ * Each line is queued as classified by the MinePass filter.
+ *
+ * @see LogQueue
+ * @see MinePassLogFilter
+ */
+@Plugin(name = "MinePassQueue", category = "Core", elementType = "appender", printObject = true)
+public final class MinePassQueueAppender extends AbstractAppender {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final LogQueue queue = new LogQueue();
+
+    private MinePassQueueAppender(String name, Filter filter, Layout<? extends Serializable> layout) {
+        super(name, filter, layout, true);
+    }
+
+    public static LogQueue getQueue() {
+        return queue;
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        queue.offer(getLayout().toSerializable(event).toString(), MinePassLogFilter.isLossless(event));
+    }
+
+    @PluginFactory
+    public static MinePassQueueAppender createAppender(@PluginAttribute("name") String name,
+                                                       @PluginElement("Layout") Layout<? extends Serializable> layout,
+                                                       @PluginElement("Filters") Filter filter) {
+        if (name == null) {
+            LOGGER.error("No name provided for MinePassQueue");
+            return null;
+        }
+        if (layout == null) {
+            LOGGER.error("No layout provided for MinePassQueue");
+            return null;
+        }
+        return new MinePassQueueAppender(name, filter, layout);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+/**
+ * Small fixed-size pool of player names.
+ * <p/>
+ * Names are looked up directly from a character range, so a name that
+ * has been seen before is returned without allocating. New names replace
+ * whatever occupied their slot, keeping the pool bounded.
+ * <p/>
+ * Not threadsafe, intended for the Server Manager thread.
+ *
+ * @see CharSlice
+ */
+public final class NamePool {
+
+    private static final int PROBES = 4;
+
+    private final String[] names;
+    private final int mask;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public NamePool(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.names = new String[size];
+        this.mask = size - 1;
+    }
+
+    public String intern(CharSequence cs, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + cs.charAt(i);  // same as String.hashCode()
+        }
+        h ^= (h >>> 16);
+
+        int free = -1;
+        for (int p = 0; p < PROBES; p++) {
+            int slot = (h + p) & mask;
+            String n = names[slot];
+            if (n == null) {
+                if (free < 0) {
+                    free = slot;
+                }
+            } else if (regionEquals(n, cs, start, end)) {
+                return n;
+            }
+        }
+
+        String name = cs.subSequence(start, end).toString();
+        names[free >= 0 ? free : h & mask] = name;
+        return name;
+    }
+
+    private static boolean regionEquals(String s, CharSequence cs, int start, int end) {
+        int n = end - start;
+        if (s.length() != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (s.charAt(i) != cs.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import net.minepass.api.gameserver.MPPlayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches compiled player privileges by UUID.
+ * <p/>
+ * Lookups are started in the background as soon as the authenticator
+ * reports a player, so the result is usually ready by the time the
+ * login event is parsed.
+ * <p/>
+ * UUIDs without a pass are negatively cached for a short time, making
+ * repeated reconnect attempts by unregistered players free. The cache
+ * is invalidated whenever a sync delivers new authorization data, and
+ * holds at most MAX_ENTRIES players, evicting the oldest first.
+ *
+ * @see PlayerPrivileges
+ * @see net.minepass.gs.mc.wrapper.parsers.AuthenticatorEventParser
+ */
+public class PassCache {
+
+    /**
+     * Notified on the prefetch thread once a prefetched pass is resolved.
+     */
+    public interface Listener {
+        void passResolved(UUID uuid, PlayerPrivileges privileges);
+    }
+
+    static final long NEGATIVE_TTL = 30000;
+    static final long POSITIVE_TTL = 300000;
+    static final long LOOKUP_TIMEOUT = 2000;
+    static final int MAX_ENTRIES = 4096;
+
+    private final MP_MinecraftWrapper wrapper;
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private volatile Listener listener;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PassCache(MP_MinecraftWrapper wrapper) {
+        this.wrapper = wrapper;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "MinePass Prefetch");
+                t.setDaemon(true);
+                PassCache.this.wrapper.getResourceMonitor().register(t, ResourceMonitor.Subsystem.PREFETCH);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Cancel pending prefetches, for shutdown.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Start resolving a player's pass in the background.
+     *
+     * @param uuid the player UUID
+     */
+    public void prefetch(final UUID uuid) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(uuid);
+        if (entry != null && !entry.isExpired(now)) {
+            if (entry.result.isDone()) {
+                notifyListener(uuid, entry.result);
+            }
+            return;
+        }
+
+        makeRoom(now);
+        entries.put(uuid, new Entry(now, executor.submit(new Callable<PlayerPrivileges>() {
+            @Override
+            public PlayerPrivileges call() {
+                PlayerPrivileges privileges = lookup(uuid);
+                Listener l = listener;
+                if (l != null) {
+                    l.passResolved(uuid, privileges);
+                }
+                return privileges;
+            }
+        })));
+    }
+
+    /**
+     * Get the compiled privileges of a player, waiting for a pending prefetch if needed.
+     *
+     * @param uuid the player UUID
+     * @return the compiled privileges, or null if the player has no pass
+     */
+    public PlayerPrivileges get(UUID uuid) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(uuid);
+
+        if (entry != null && !entry.isExpired(now)) {
+            try {
+                PlayerPrivileges privileges = entry.result.get(LOOKUP_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (privileges == null) {
+                    negativeHits.incrementAndGet();
+                } else {
+                    hits.incrementAndGet();
+                }
+                return privileges;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                wrapper.getLogger().warn("Pass prefetch failed for player ".concat(uuid.toString()), this);
+            }
+        }
+
+        // Not prefetched (or prefetch failed), resolve in place.
+        misses.incrementAndGet();
+        PlayerPrivileges privileges = lookup(uuid);
+        makeRoom(now);
+        entries.put(uuid, new Entry(now, CompletableFuture.completedFuture(privileges)));
+        return privileges;
+    }
+
+    /**
+     * Drop all cached results, e.g. after new authorization data has been synced.
+     */
+    public void invalidate() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private PlayerPrivileges lookup(UUID uuid) {
+        MPPlayer player = wrapper.getMinepass().getPlayer(uuid);
+        return player != null ? PlayerPrivileges.compile(uuid, player) : null;
+    }
+
+    private void notifyListener(UUID uuid, Future<PlayerPrivileges> result) {
+        Listener l = listener;
+        if (l != null) {
+            try {
+                l.passResolved(uuid, result.get());
+            } catch (InterruptedException | ExecutionException e) {
+                // Ignore, resolved again on login.
+            }
+        }
+    }
+
+    /**
+     * Keep the cache below MAX_ENTRIES, dropping expired entries and then the oldest.
+     * <p/>
+     * The oldest are evicted down to 7/8 of the cap, so a flood of distinct UUIDs
+     * does not scan the cache on every lookup.
+     */
+    private void makeRoom(long now) {
+        if (entries.size() < MAX_ENTRIES) {
+            return;
+        }
+
+        Iterator<Map.Entry<UUID, Entry>> i = entries.entrySet().iterator();
+        while (i.hasNext()) {
+            if (i.next().getValue().isExpired(now)) {
+                i.remove();
+            }
+        }
+
+        int excess = entries.size() - (MAX_ENTRIES - MAX_ENTRIES / 8);
+        if (excess <= 0) {
+            return;
+        }
+        ArrayList<Map.Entry<UUID, Entry>> oldest = new ArrayList<>(entries.entrySet());
+        Collections.sort(oldest, new Comparator<Map.Entry<UUID, Entry>>() {
+            @Override
+            public int compare(Map.Entry<UUID, Entry> a, Map.Entry<UUID, Entry> b) {
+                return Long.compare(a.getValue().created, b.getValue().created);
+            }
+        });
+        for (int n = 0; n < excess && n < oldest.size(); n++) {
+            Map.Entry<UUID, Entry> e = oldest.get(n);
+            entries.remove(e.getKey(), e.getValue());
+        }
+    }
+
+    private static class Entry {
+        final long created;
+        final Future<PlayerPrivileges> result;
+
+        Entry(long created, Future<PlayerPrivileges> result) {
+            this.created = created;
+            this.result = result;
+        }
+
+        boolean isExpired(long now) {
+            if (!result.isDone()) {
+                return false;
+            }
+            try {
+                long ttl = result.get() == null ? NEGATIVE_TTL : POSITIVE_TTL;
+                return now - created > ttl;
+            } catch (InterruptedException | ExecutionException e) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import net.minepass.api.gameserver.MPPlayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Login privileges compiled from a player's MinePass.
+ * <p/>
+ * Standard privileges (mc:survival, mc:creative, etc.) resolve to a game mode,
+ * while command privileges (mc:/command) are expanded into ready-to-send
+ * server commands with $name and $uuid already substituted.
+ *
+ * @see PassCache
+ */
+public final class PlayerPrivileges {
+
+    public static final int GAMEMODE_NONE = -2;     // pass does not permit access
+    public static final int GAMEMODE_DEFAULT = -1;  // leave server default in place
+
+    private static final Pattern privPattern = Pattern.compile("mc:(?<name>[a-z]+)");
+    private static final Pattern commandPattern = Pattern.compile("mc:/(?<command>.+)");
+
+    public final UUID uuid;
+    public final String name;
+    public final int gameMode;
+    public final List<String> commands;
+
+    private PlayerPrivileges(UUID uuid, String name, int gameMode, List<String> commands) {
+        this.uuid = uuid;
+        this.name = name;
+        this.gameMode = gameMode;
+        this.commands = Collections.unmodifiableList(commands);
+    }
+
+    public boolean permitsAccess() {
+        return gameMode > GAMEMODE_NONE;
+    }
+
+    public static PlayerPrivileges compile(UUID uuid, MPPlayer player) {
+        int gameMode = GAMEMODE_NONE;
+        ArrayList<String> commands = new ArrayList<>();
+
+        Matcher pm;
+        for (String p : player.privileges) {
+            if ((pm = privPattern.matcher(p)).find()) {
+                // Standard privileges.
+                //
+                switch (pm.group("name")) {
+                    case "default":
+                        gameMode = GAMEMODE_DEFAULT;
+                        break;
+                    case "survival":
+                        gameMode = 0;
+                        break;
+                    case "creative":
+                        gameMode = 1;
+                        break;
+                    case "adventure":
+                        gameMode = 2;
+                        break;
+                    case "spectator":
+                        gameMode = 3;
+                        break;
+                }
+            } else if ((pm = commandPattern.matcher(p)).find()) {
+                // Command privileges.
+                //
+                String command = pm.group("command");
+                command = command.replace("$name", player.name);
+                command = command.replace("$uuid", uuid.toString());
+                commands.add(command);
+            }
+        }
+
+        return new PlayerPrivileges(uuid, player.name, gameMode, commands);
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact registry of players seen by the authenticator, and of those online.
+ * <p/>
+ * Each UUID is stored as two longs in open-addressing arrays, alongside the
+ * player name, with a separate name-to-slot index. This replaces three maps
+ * of boxed keys and values, which cost several hundred bytes per player.
+ * <p/>
+ * There must be a single writer (the Server Manager thread). Reads are
+ * lock-free from any thread: slots are written with volatile stores in an
+ * order that lets readers ignore half-written entries, and tables are
+ * replaced as a whole when they grow.
+ * <p/>
+ * The nil UUID cannot be stored.
+ *
+ * @see CommonState
+ */
+public final class PlayerRegistry {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NAME_EMPTY = 0;
+    private static final int NAME_DELETED = -1;
+
+    private static final class Table {
+        final int mask;
+        final AtomicLongArray msb;
+        final AtomicLongArray lsb;
+        final AtomicReferenceArray<String> names;
+        final AtomicIntegerArray nameIndex;  // slot + 1, NAME_EMPTY or NAME_DELETED
+        final long[] loginTime;  // writer only
+        int size = 0;
+        int nameTombstones = 0;
+
+        /**
+         * Online player slots, replaced on every login and logout.
+         */
+        volatile int[] online = new int[0];
+
+        Table(int capacity) {
+            this.mask = capacity - 1;
+            this.msb = new AtomicLongArray(capacity);
+            this.lsb = new AtomicLongArray(capacity);
+            this.names = new AtomicReferenceArray<>(capacity);
+            this.nameIndex = new AtomicIntegerArray(capacity);
+            this.loginTime = new long[capacity];
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+    }
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+
+    // Writer
+    // ------------------------------------------------------------------------------------------------------------- //
+
+    /**
+     * Store a player as presented by an authenticator event.
+     */
+    public void authenticated(String name, UUID uuid) {
+        long m = uuid.getMostSignificantBits();
+        long l = uuid.getLeastSignificantBits();
+        if (m == 0 && l == 0) {
+            return;
+        }
+
+        Table t = table;
+        if ((t.size + 1) * 2 > t.capacity() || (t.size + t.nameTombstones + 1) * 2 > t.capacity()) {
+            t = resize(t);
+        }
+
+        int slot = findSlot(t, m, l);
+        if (slot >= 0) {
+            String previous = t.names.get(slot);
+            if (!previous.equals(name)) {
+                removeName(t, previous, slot);
+                t.names.set(slot, name);
+            }
+            indexName(t, name, slot);  // latest authentication owns the name
+            return;
+        }
+
+        slot = hash(m, l) & t.mask;
+        while (t.msb.get(slot) != 0 || t.lsb.get(slot) != 0) {
+            slot = (slot + 1) & t.mask;
+        }
+
+        // Name and low bits first, readers match on the high bits.
+        t.names.set(slot, name);
+        t.lsb.set(slot, l);
+        t.msb.set(slot, m);
+        t.size++;
+        indexName(t, name, slot);
+    }
+
+    /**
+     * Mark a player online by name, per a login event.
+     *
+     * @return the player's UUID, or null if the authenticator did not store it
+     */
+    public UUID login(String name) {
+        Table t = table;
+        int slot = findName(t, name);
+        if (slot < 0) {
+            return null;
+        }
+
+        int[] current = t.online;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == slot) {
+                return uuidAt(t, slot);
+            }
+            if (name.equals(t.names.get(current[i]))) {
+                // Name is now held by a different UUID.
+                int[] updated = current.clone();
+                updated[i] = slot;
+                t.loginTime[slot] = System.currentTimeMillis();
+                t.online = updated;
+                return uuidAt(t, slot);
+            }
+        }
+        t.loginTime[slot] = System.currentTimeMillis();
+        int[] updated = new int[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = slot;
+        t.online = updated;
+
+        return uuidAt(t, slot);
+    }
+
+    /**
+     * Mark a player offline by name, per a logout event.
+     *
+     * @return the time the player logged in, or 0 if they were not online
+     */
+    public long logout(String name) {
+        Table t = table;
+        int[] current = t.online;
+        for (int i = 0; i < current.length; i++) {
+            if (name.equals(t.names.get(current[i]))) {
+                int[] updated = new int[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                t.online = updated;
+                return t.loginTime[current[i]];
+            }
+        }
+        return 0;
+    }
+
+    // Readers
+    // ------------------------------------------------------------------------------------------------------------- //
+
+    public UUID getAuthUUID(String name) {
+        Table t = table;
+        int slot = findName(t, name);
+        return slot >= 0 ? uuidAt(t, slot) : null;
+    }
+
+    public String getAuthName(UUID uuid) {
+        Table t = table;
+        int slot = findSlot(t, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return slot >= 0 ? t.names.get(slot) : null;
+    }
+
+    public int size() {
+        return table.size;
+    }
+
+    public boolean hasOnlinePlayers() {
+        return table.online.length > 0;
+    }
+
+    public int getOnlineCount() {
+        return table.online.length;
+    }
+
+    public boolean isOnline(UUID uuid) {
+        Table t = table;
+        int slot = findSlot(t, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot >= 0) {
+            for (int s : t.online) {
+                if (s == slot) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get a snapshot of online players, in [uuid]=name format.
+     */
+    public Map<UUID, String> getOnlinePlayers() {
+        Table t = table;
+        int[] current = t.online;
+        HashMap<UUID, String> players = new HashMap<>(current.length * 2);
+        for (int slot : current) {
+            players.put(uuidAt(t, slot), t.names.get(slot));
+        }
+        return players;
+    }
+
+    // Internals
+    // ------------------------------------------------------------------------------------------------------------- //
+
+    private static int hash(long m, long l) {
+        long h = m ^ l;
+        h ^= (h >>> 32);
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32);
+    }
+
+    private static int findSlot(Table t, long m, long l) {
+        int slot = hash(m, l) & t.mask;
+        while (true) {
+            long sm = t.msb.get(slot);
+            if (sm == m && t.lsb.get(slot) == l) {
+                return (m == 0 && l == 0) ? -1 : slot;
+            }
+            if (sm == 0 && t.lsb.get(slot) == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+    }
+
+    private static int findName(Table t, String name) {
+        int i = name.hashCode() & t.mask;
+        while (true) {
+            int v = t.nameIndex.get(i);
+            if (v == NAME_EMPTY) {
+                return -1;
+            }
+            if (v != NAME_DELETED && name.equals(t.names.get(v - 1))) {
+                return v - 1;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    private static void indexName(Table t, String name, int slot) {
+        int i = name.hashCode() & t.mask;
+        int free = -1;
+        while (true) {
+            int v = t.nameIndex.get(i);
+            if (v == NAME_EMPTY) {
+                break;
+            }
+            if (v == NAME_DELETED) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (name.equals(t.names.get(v - 1))) {
+                t.nameIndex.set(i, slot + 1);  // name now belongs to a different UUID
+                return;
+            }
+            i = (i + 1) & t.mask;
+        }
+
+        if (free >= 0) {
+            t.nameTombstones--;
+            i = free;
+        }
+        t.nameIndex.set(i, slot + 1);
+    }
+
+    private static void removeName(Table t, String name, int slot) {
+        int i = name.hashCode() & t.mask;
+        while (true) {
+            int v = t.nameIndex.get(i);
+            if (v == NAME_EMPTY) {
+                return;
+            }
+            if (v == slot + 1) {
+                t.nameIndex.set(i, NAME_DELETED);
+                t.nameTombstones++;
+                return;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    private static UUID uuidAt(Table t, int slot) {
+        return new UUID(t.msb.get(slot), t.lsb.get(slot));
+    }
+
+    /**
+     * Copy all entries into a larger table, remapping online slots, then publish it.
+     */
+    private Table resize(Table old) {
+        int capacity = old.capacity();
+        while ((old.size + 1) * 2 > capacity) {
+            capacity <<= 1;
+        }
+        Table t = new Table(capacity);
+
+        int[] remap = new int[old.capacity()];
+        for (int i = 0; i < old.capacity(); i++) {
+            long m = old.msb.get(i);
+            long l = old.lsb.get(i);
+            if (m == 0 && l == 0) {
+                continue;
+            }
+            int slot = hash(m, l) & t.mask;
+            while (t.msb.get(slot) != 0 || t.lsb.get(slot) != 0) {
+                slot = (slot + 1) & t.mask;
+            }
+            String name = old.names.get(i);
+            t.names.set(slot, name);
+            t.lsb.set(slot, l);
+            t.msb.set(slot, m);
+            t.loginTime[slot] = old.loginTime[i];
+            t.size++;
+            remap[i] = slot;
+        }
+
+        // Rebuild the name index, keeping only names still pointing at their slot.
+        for (int i = 0; i < old.capacity(); i++) {
+            int v = old.nameIndex.get(i);
+            if (v > 0) {
+                indexName(t, old.names.get(v - 1), remap[v - 1]);
+            }
+        }
+
+        int[] current = old.online;
+        int[] updated = new int[current.length];
+        for (int i = 0; i < current.length; i++) {
+            updated[i] = remap[current[i]];
+        }
+        t.online = updated;
+
+        table = t;
+        return t;
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samples CPU time and allocation per thread, and attributes it to the
+ * wrapper subsystems or to the server.
+ * <p/>
+ * Wrapper threads are registered by the code that creates them, since
+ * several share a name. Every other thread in the process counts as the
+ * server's, including the log4j appender and MinePass filter, which run on
+ * the thread that logs. Allocation is only measured on HotSpot-derived JVMs.
+ * <p/>
+ * A sample is taken every minute and logged at debug level, or at info
+ * level while the server is lagging. An operator can also type
+ * "minepass resources" at the console, or send "resources" to the control
+ * socket, for a snapshot of the current period which leaves it running.
+ *
+ * @see TickHealth
+ * @see WrapperMetrics
+ */
+public class ResourceMonitor implements Runnable {
+
+    public static final String CONSOLE_COMMAND = "minepass resources";
+
+    static final long SAMPLE_INTERVAL = 60000;
+
+    public enum Subsystem {
+        PARSERS,    // MinePass (ServerManager), MinePass Gate
+        TASKS,      // MinePass (ScheduledTasks)
+        SYNC,
+        PREFETCH,
+        TELEMETRY,
+        COMMANDS,   // MPConsole, MPCommands
+        CONTROL,
+        CONFIG,
+        MONITOR,
+        WATCHDOG
+    }
+
+    private static final Subsystem[] subsystems = Subsystem.values();
+
+    private final MP_MinecraftWrapper wrapper;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean hotspotThreads;
+    private final com.sun.management.OperatingSystemMXBean hotspotOs;
+    private final boolean cpuSupported;
+
+    private final ConcurrentHashMap<Long, Subsystem> registered = new ConcurrentHashMap<>();
+
+    /**
+     * Last cpu and allocation reading per thread id, guarded by this.
+     */
+    private final HashMap<Long, long[]> lastReadings = new HashMap<>();
+    private long lastSampleTime;
+    private long lastProcessCpu;
+    private long lastGcCount;
+    private long lastGcTime;
+
+    private final long[] totalCpu = new long[subsystems.length];
+    private final long[] totalAllocated = new long[subsystems.length];
+    private volatile Sample last;
+
+    public ResourceMonitor(MP_MinecraftWrapper wrapper) {
+        this.wrapper = wrapper;
+
+        boolean cpu = threads.isThreadCpuTimeSupported();
+        if (cpu && !threads.isThreadCpuTimeEnabled()) {
+            try {
+                threads.setThreadCpuTimeEnabled(true);
+            } catch (UnsupportedOperationException | SecurityException e) {
+                cpu = false;
+            }
+        }
+        this.cpuSupported = cpu;
+
+        com.sun.management.ThreadMXBean hs = null;
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            hs = (com.sun.management.ThreadMXBean) threads;
+            try {
+                if (!hs.isThreadAllocatedMemoryEnabled()) {
+                    hs.setThreadAllocatedMemoryEnabled(true);
+                }
+                if (!hs.isThreadAllocatedMemorySupported()) {
+                    hs = null;
+                }
+            } catch (UnsupportedOperationException | SecurityException e) {
+                hs = null;
+            }
+        }
+        this.hotspotThreads = hs;
+
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        this.hotspotOs = os instanceof com.sun.management.OperatingSystemMXBean
+                ? (com.sun.management.OperatingSystemMXBean) os : null;
+
+        // Establish a baseline, so the first sample covers only its own period.
+        sample(true);
+    }
+
+    /**
+     * Attribute a thread's resource use to a wrapper subsystem.
+     *
+     * @param thread the thread, started or not
+     * @param subsystem the subsystem it works for
+     */
+    public void register(Thread thread, Subsystem subsystem) {
+        registered.put(thread.getId(), subsystem);
+    }
+
+    /**
+     * @return the most recent periodic sample, or null before the first
+     */
+    public Sample getLast() {
+        return last;
+    }
+
+    /**
+     * @return CPU nanoseconds used by a subsystem since the wrapper started
+     */
+    public synchronized long getTotalCpu(Subsystem subsystem) {
+        return totalCpu[subsystem.ordinal()];
+    }
+
+    /**
+     * @return bytes allocated by a subsystem since the wrapper started
+     */
+    public synchronized long getTotalAllocated(Subsystem subsystem) {
+        return totalAllocated[subsystem.ordinal()];
+    }
+
+    public boolean isCpuSupported() {
+        return cpuSupported;
+    }
+
+    public boolean isAllocationSupported() {
+        return hotspotThreads != null;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(SAMPLE_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            Sample s = sample(true);
+            ServerManager server = wrapper.getServerManager();
+            if (server != null && server.getTickHealth().isLagging()) {
+                wrapper.getLogger().info(s.toString(), this);
+            } else {
+                wrapper.getLogger().debug(s.toString(), this);
+            }
+        }
+    }
+
+    /**
+     * Resource use since the last periodic sample, for on-demand reports.
+     * <p/>
+     * The periodic sample keeps covering its full interval.
+     */
+    public Sample snapshot() {
+        return sample(false);
+    }
+
+    /**
+     * Take a sample covering the time since the previous periodic one.
+     *
+     * @param commit whether to start a new period, publishing the sample unless it is the baseline
+     */
+    private synchronized Sample sample(boolean commit) {
+        long now = System.currentTimeMillis();
+        Sample s = new Sample(now - lastSampleTime);
+
+        long[] ids = threads.getAllThreadIds();
+        HashSet<Long> live = new HashSet<>(ids.length * 2);
+        for (long id : ids) {
+            long cpu = cpuSupported ? threads.getThreadCpuTime(id) : -1;
+            long allocated = hotspotThreads != null ? hotspotThreads.getThreadAllocatedBytes(id) : -1;
+            if (cpu < 0 && allocated < 0) {
+                continue;  // exited since listing
+            }
+            live.add(id);
+
+            long[] reading = lastReadings.get(id);
+            long cpuDelta = cpu < 0 ? 0 : cpu - (reading == null ? 0 : reading[0]);
+            long allocatedDelta = allocated < 0 ? 0 : allocated - (reading == null ? 0 : reading[1]);
+            if (commit) {
+                if (reading == null) {
+                    reading = new long[2];
+                    lastReadings.put(id, reading);
+                }
+                reading[0] = Math.max(cpu, 0);
+                reading[1] = Math.max(allocated, 0);
+            }
+
+            Subsystem subsystem = registered.get(id);
+            if (subsystem == null) {
+                s.serverCpu += cpuDelta;
+                s.serverAllocated += allocatedDelta;
+            } else {
+                s.cpu[subsystem.ordinal()] += cpuDelta;
+                s.allocated[subsystem.ordinal()] += allocatedDelta;
+                if (commit) {
+                    totalCpu[subsystem.ordinal()] += cpuDelta;
+                    totalAllocated[subsystem.ordinal()] += allocatedDelta;
+                }
+            }
+        }
+        if (commit) {
+            // Forget exited threads, but not registered ones that have yet to start.
+            Iterator<Long> exited = lastReadings.keySet().iterator();
+            while (exited.hasNext()) {
+                Long id = exited.next();
+                if (!live.contains(id)) {
+                    exited.remove();
+                    registered.remove(id);
+                }
+            }
+        }
+
+        // Process time also covers GC and JIT threads, which are not Java threads.
+        if (hotspotOs != null) {
+            long processCpu = hotspotOs.getProcessCpuTime();
+            if (processCpu >= 0) {
+                s.processCpu = processCpu - lastProcessCpu;
+                if (commit) {
+                    lastProcessCpu = processCpu;
+                }
+            }
+        }
+
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(gc.getCollectionCount(), 0);
+            gcTime += Math.max(gc.getCollectionTime(), 0);
+        }
+        s.gcCount = gcCount - lastGcCount;
+        s.gcMillis = gcTime - lastGcTime;
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        s.heapUsed = heap.getUsed();
+        s.heapCommitted = heap.getCommitted();
+        s.heapMax = heap.getMax();
+
+        if (commit) {
+            if (lastSampleTime > 0) {
+                this.last = s;
+            }
+            lastSampleTime = now;
+            lastGcCount = gcCount;
+            lastGcTime = gcTime;
+        }
+        return s;
+    }
+
+    /**
+     * Resource use over one sampling period.
+     */
+    public static class Sample {
+        public final long periodMillis;
+        final long[] cpu = new long[subsystems.length];
+        final long[] allocated = new long[subsystems.length];
+        long serverCpu;
+        long serverAllocated;
+        long processCpu = -1;
+        long gcCount;
+        long gcMillis;
+        long heapUsed;
+        long heapCommitted;
+        long heapMax;
+
+        Sample(long periodMillis) {
+            this.periodMillis = periodMillis;
+        }
+
+        public long getCpu(Subsystem subsystem) {
+            return cpu[subsystem.ordinal()];
+        }
+
+        public long getAllocated(Subsystem subsystem) {
+            return allocated[subsystem.ordinal()];
+        }
+
+        public long getWrapperCpu() {
+            long sum = 0;
+            for (long c : cpu) {
+                sum += c;
+            }
+            return sum;
+        }
+
+        public long getWrapperAllocated() {
+            long sum = 0;
+            for (long a : allocated) {
+                sum += a;
+            }
+            return sum;
+        }
+
+        public long getServerCpu() {
+            return serverCpu;
+        }
+
+        public long getServerAllocated() {
+            return serverAllocated;
+        }
+
+        /**
+         * @return CPU nanoseconds used by the whole process, or -1 if unknown
+         */
+        public long getProcessCpu() {
+            return processCpu;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcMillis() {
+            return gcMillis;
+        }
+
+        public long getHeapUsed() {
+            return heapUsed;
+        }
+
+        public long getHeapCommitted() {
+            return heapCommitted;
+        }
+
+        public long getHeapMax() {
+            return heapMax;
+        }
+
+        /**
+         * @return the wrapper's share of process CPU time, in percent
+         */
+        public double getWrapperCpuPercent() {
+            long total = processCpu > 0 ? processCpu : getWrapperCpu() + serverCpu;
+            return total > 0 ? 100.0 * getWrapperCpu() / total : 0;
+        }
+
+        public double getWrapperAllocatedPercent() {
+            long total = getWrapperAllocated() + serverAllocated;
+            return total > 0 ? 100.0 * getWrapperAllocated() / total : 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Resources over ");
+            sb.append(periodMillis / 1000).append("s: wrapper ");
+            sb.append(millis(getWrapperCpu())).append(" cpu (").append(percent(getWrapperCpuPercent()));
+            sb.append(" of process), ").append(megabytes(getWrapperAllocated())).append(" allocated (");
+            sb.append(percent(getWrapperAllocatedPercent())).append(')');
+
+            String separator = "; ";
+            for (Subsystem subsystem : subsystems) {
+                int i = subsystem.ordinal();
+                if (cpu[i] == 0 && allocated[i] == 0) {
+                    continue;
+                }
+                sb.append(separator).append(subsystem.name().toLowerCase()).append(' ');
+                sb.append(millis(cpu[i])).append('/').append(megabytes(allocated[i]));
+                separator = ", ";
+            }
+
+            sb.append("; server threads ").append(millis(serverCpu)).append('/').append(megabytes(serverAllocated));
+            if (processCpu >= 0) {
+                sb.append(", process ").append(millis(processCpu));
+            }
+            sb.append("; gc ").append(gcCount).append(" in ").append(gcMillis).append("ms");
+            sb.append("; heap ").append(megabytes(heapUsed)).append(" of ");
+            sb.append(megabytes(heapMax > 0 ? heapMax : heapCommitted));
+            return sb.toString();
+        }
+
+        private static String millis(long nanos) {
+            return (nanos / 1000000) + "ms";
+        }
+
+        private static String megabytes(long bytes) {
+            return String.format("%.1fMB", bytes / 1048576.0);
+        }
+
+        private static String percent(double p) {
+            return String.format("%.1f%%", p);
+        }
+    }
+}
@@ -27,7 +27,6 @@ package net.minepass.gs.mc.wrapper;
 import net.minepass.gs.GameserverTasks;
 import net.minepass.gs.InputBridge;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -48,60 +47,85 @@ import java.util.UUID;
  */
 public class ScheduledTasks extends GameserverTasks implements Runnable {
 
+    static final long MAX_DEFERRAL = 5 * 60 * 1000;  // send anyway if the server never recovers
+
     private MP_MinecraftWrapper wrapper;
+    private MessageBatch messages;
+    private long deferredSince = 0;
 
     public ScheduledTasks(MP_MinecraftWrapper wrapper) {
         super(wrapper.getMinepass());
         this.wrapper = wrapper;
+
+        // Warnings issued during a task run are sent together afterwards.
+        this.messages = wrapper.getServerManager().newMessageBatch();
     }
 
     @Override
     protected Map<UUID, String> getCurrentPlayers() {
-        HashMap<UUID, String> currentPlayers = new HashMap<>();
-        for (Map.Entry<String, UUID> entry : wrapper.getState().currentPlayers.entrySet()) {
-            currentPlayers.put(entry.getValue(), entry.getKey());
+        Map<UUID, String> currentPlayers = wrapper.getState().players.getOnlinePlayers();
+
+        JoinTracer tracer = wrapper.getServerManager().getJoinTracer();
+        if (tracer.hasActiveTraces()) {
+            for (UUID playerId : currentPlayers.keySet()) {
+                tracer.complete(playerId, JoinTracer.Stage.FIRST_TASK_CHECK);
+            }
         }
+
         return currentPlayers;
     }
 
     @Override
     protected void updateAndReloadLocalAuth() {
         wrapper.getMinepass().updateLocalWhitelist();
-        wrapper.getConsoleManager().sendCommand("whitelist reload");
+        wrapper.getServerManager().getPassCache().invalidate();
+        wrapper.getServerManager().getJoinGate().reset();
+        reloadWhitelist();
         wrapper.getLogger().info("MinePass Synchronized", this);
+
+        SyncScheduler syncScheduler = wrapper.getServerManager().getSyncScheduler();
+        if (syncScheduler != null) {
+            syncScheduler.notifyDataChanged();
+        }
+    }
+
+    /**
+     * Whether to hold back messages, as the server is lagging.
+     * <p/>
+     * Held messages are coalesced by the message batch. The whitelist reload is
+     * never held back, since players without a pass are only refused by the
+     * server whitelist.
+     */
+    private boolean isDeferring() {
+        if (!wrapper.getServerManager().getTickHealth().isLagging()) {
+            deferredSince = 0;
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (deferredSince == 0) {
+            deferredSince = now;
+        }
+        return now - deferredSince < MAX_DEFERRAL;
+    }
+
+    private void reloadWhitelist() {
+        wrapper.getConsoleManager().sendCommand("whitelist reload", CommandLane.SECURITY);
+        wrapper.getServerManager().recordDecision(DecisionJournal.Type.WHITELIST_RELOAD, null, null, -1);
     }
 
     @Override
     protected void kickPlayer(UUID playerId, String message) {
-        wrapper.getServerManager().kickPlayer(wrapper.getState().playerAuthNames.get(playerId), message);
+        wrapper.getServerManager().kickPlayer(wrapper.getState().players.getAuthName(playerId), message);
     }
 
     @Override
     protected void warnPlayer(UUID playerId, String message) {
-        wrapper.getServerManager().tellPlayerRaw(playerId.toString(),
-                String.format(
-                        "[\"\",{\"text\":\"%s\",\"color\":\"gold\"}]",
-                        message
-                )
-        );
+        messages.warnPlayer(playerId, message);
     }
 
     @Override
     protected void warnPlayerPass(UUID playerId, String message) {
-        wrapper.getServerManager().tellPlayerRaw(playerId.toString(),
-                String.format(
-                        "[\"\",{\"text\":\"%s\",\"color\":\"aqua\",\"clickEvent\":{\"action\":\"open_url\",\"value\":\"%s\"}}]",
-                        message,
-                        wrapper.getMinepass().getServer().join_url
-                )
-        );
-        wrapper.getServerManager().tellPlayerRaw(playerId.toString(),
-                String.format(
-                        "[\"\",{\"text\":\"%s\",\"color\":\"aqua\",\"clickEvent\":{\"action\":\"open_url\",\"value\":\"%s\"}}]",
-                        "Press '/' then click this message to get your MinePass.",
-                        wrapper.getMinepass().getServer().join_url
-                )
-        );
+        messages.warnPlayerPass(playerId, message, wrapper.getMinepass().getServer().join_url);
     }
 
     public void run() {
@@ -112,7 +136,16 @@ public class ScheduledTasks extends GameserverTasks implements Runnable {
                 return;
             }
 
+            long start = System.currentTimeMillis();
             runTasks();
+
+            if (!isDeferring()) {
+                if (!messages.isEmpty()) {
+                    messages.send();
+                }
+                deferredSince = 0;
+            }
+            wrapper.getServerManager().getTaskRunTime().record(System.currentTimeMillis() - start);
         }
     }
 }
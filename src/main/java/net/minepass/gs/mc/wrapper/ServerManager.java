@@ -27,19 +27,22 @@ package net.minepass.gs.mc.wrapper;
 import net.minepass.api.gameserver.MPAsciiArt;
 import net.minepass.api.gameserver.MPWorldServerDetails;
 import net.minepass.api.gameserver.embed.solidtx.TxLog;
-import net.minepass.api.gameserver.embed.solidtx.TxSync;
 import net.minepass.gs.InputBridge;
 import net.minepass.gs.mc.MinePassMC;
 import net.minepass.gs.mc.wrapper.parsers.AuthenticatorEventParser;
+import net.minepass.gs.mc.wrapper.parsers.CommandFeedbackEventParser;
 import net.minepass.gs.mc.wrapper.parsers.PlayerLoginEventParser;
 import net.minepass.gs.mc.wrapper.parsers.PlayerLogoutEventParser;
+import net.minepass.gs.mc.wrapper.parsers.ServerLagEventParser;
 import net.minepass.gs.mc.wrapper.parsers.ServerStartEventParser;
 import net.minepass.gs.mc.wrapper.parsers.ServerStopEventParser;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * The ServerManager hooks into the log4j system to read status entries from the
@@ -58,99 +61,137 @@ import java.util.LinkedList;
  */
 public class ServerManager implements Runnable {
 
+    static final JsonText.Template passHint = new JsonText.Template(
+            "Press '/' then click this message to get your MinePass.", "aqua"
+    );
+
     private MP_MinecraftWrapper wrapper;
 
     private TxLog logger;
-    private Method getNextLogEventMethod;
-    private Object[] getNextLogEventArgs;
+    private final LogQueue logQueue = MinePassQueueAppender.getQueue();
+    private long reportedDrops = 0;
+    private long reportedPriorityDrops = 0;
+    private long lastDropReport = 0;
 
     private Thread syncThread;
+    private SyncScheduler syncScheduler;
     private Thread scheduledTasks;
-
-    private LinkedList<EventParser> eventParsers;
-    private HashMap<String, EventParser> eventParserHold;
+    private Thread telemetryThread;
+    private Thread watchdogThread;
+    private StallWatchdog stallWatchdog;
+    private PassCache passCache;
+    private JoinGate joinGate;
+    private CommandTracker commandTracker;
+    private DecisionJournal decisionJournal;
+    private final JoinTracer joinTracer = new JoinTracer();
+    private final LatencyHistogram taskRunTime = new LatencyHistogram();
+    private final TickHealth tickHealth = new TickHealth();
+    private SessionTelemetry sessionTelemetry;
+    private volatile long startupTime;
+
+    private EventParserRegistry eventParsers;
+    private EventAssembler eventAssembler;
+    private final NamePool namePool = new NamePool(4096);
 
     public ServerManager(MP_MinecraftWrapper wrapper) {
         this.wrapper = wrapper;
         this.logger = wrapper.getLogger();
 
-        // Use reflection to access the Mojang log adapter, since it is
-        // not available as a compile-time dependency.
+        this.passCache = new PassCache(wrapper);
+        this.joinGate = new JoinGate(wrapper);
+        passCache.setListener(joinGate);
+        this.commandTracker = new CommandTracker(wrapper);
+        this.sessionTelemetry = new SessionTelemetry(wrapper);
         try {
-            Class logClass = Class.forName("com.mojang.util.QueueLogAppender");
-            this.getNextLogEventMethod = logClass.getDeclaredMethod("getNextLogEvent", String.class);
-            this.getNextLogEventArgs = new Object[]{"MinePass"};  // name of queue from modified log4j2.xml
-        } catch (ClassNotFoundException | NoSuchMethodException e) {
-            throw new RuntimeException("Could not hook into server log queue.", e);
+            this.decisionJournal = DecisionJournal.fromConfig(wrapper);
+        } catch (IOException e) {
+            logger.warn("Could not open decision journal: ".concat(String.valueOf(e.getMessage())), this);
         }
-
-        this.eventParserHold = new HashMap<>();
-        this.eventParsers = new LinkedList<>();
+        this.eventAssembler = new EventAssembler();
+        this.eventParsers = new EventParserRegistry();
         initEventParsers();
+        eventParsers.refresh();
     }
 
     private void initEventParsers() {
-        eventParsers.add(new ServerStartEventParser(wrapper));
-        eventParsers.add(new ServerStopEventParser(wrapper));
-        eventParsers.add(new AuthenticatorEventParser(wrapper));
-        eventParsers.add(new PlayerLoginEventParser(wrapper));
-        eventParsers.add(new PlayerLogoutEventParser(wrapper));
+        eventParsers.register(new ServerStartEventParser(wrapper));
+        eventParsers.register(new ServerStopEventParser(wrapper));
+        eventParsers.register(new AuthenticatorEventParser(wrapper));
+        eventParsers.register(new PlayerLoginEventParser(wrapper));
+        eventParsers.register(new PlayerLogoutEventParser(wrapper));
+        eventParsers.register(new CommandFeedbackEventParser(wrapper));
+        eventParsers.register(new ServerLagEventParser(wrapper));
     }
 
-    private final int THREAD = 0;
-    private final int LEVEL = 1;
-    private final int MESSAGE = 2;
+    private final ThreadLocal<StringBuilder> commandBuffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(512);
+        }
+    };
 
     @Override
     public void run() {
         EventParser.Status status;
         String logOutput;
-        String[] l;
+        LogLine l = new LogLine();
 
         while (true) {
-            logOutput = getNextLogEvent();
+            try {
+                logOutput = logQueue.poll(750);
+            } catch (InterruptedException e) {
+                return;
+            }
             if (logOutput == null) {
-                try {
-                    Thread.sleep(750);
-                } catch (InterruptedException e) {
-                    return;
-                }
+                eventAssembler.expire(System.currentTimeMillis());
+                commandTracker.checkDeadlines(System.currentTimeMillis());
+                reportDroppedLines();
                 continue;
             }
 
-            l = logOutput.split("\\|");  // THREAD, LEVEL, MESSAGE
+            if (!l.set(logOutput)) {  // THREAD, LEVEL, MESSAGE
+                continue;
+            }
 
-            if (eventParserHold.containsKey(l[THREAD])) {
-                // This log entry should be applied to an existing event on a held thread.
-                //
-                status = eventParserHold.get(l[THREAD]).acceptLogMessage(l[MESSAGE], true);
-                if (status == EventParser.Status.HANDLED) {
-                    eventParserHold.remove(l[THREAD]);
-                }
-            } else {
-                // Search for applicable parser.
+            if (!eventAssembler.isEmpty()) {
+                eventAssembler.expire(System.currentTimeMillis());
+            }
+            commandTracker.checkDeadlines(System.currentTimeMillis());
+            reportDroppedLines();
+
+            if (eventAssembler.isEmpty() || !eventAssembler.offer(l.getThread(), l.getMessage())) {
+                // Not part of an existing event on a held thread,
+                // search for applicable parser.
                 //
+                EventParserRegistry.Slot[] active = eventParsers.getActive();
+                EventParserRegistry.Slot matched = null;
+                int tried = 0;
+
                 runParsers:
-                for (EventParser p : eventParsers) {
-                    if (!p.isEnabled())
-                        continue;
+                for (EventParserRegistry.Slot slot : active) {
+                    EventParser p = slot.parser;
+                    tried++;
 
-                    if (!p.filterLevel(l[LEVEL]))
+                    if (!p.filterLevel(l.getLevel()))
                         continue;
 
-                    if (!p.filterThread(l[THREAD]))
+                    if (!p.filterThread(l.getThread()))
                         continue;
 
-                    status = p.acceptLogMessage(l[MESSAGE], false);
+                    status = p.acceptLogMessage(l.getMessage(), false);
 
                     switch (status) {
                         case HANDLED:
+                            matched = slot;
                             break runParsers;
                         case HOLD:
-                            eventParserHold.put(l[THREAD], p);
+                            matched = slot;
+                            eventAssembler.hold(l.getThread().toString(), p);
                             break runParsers;
                     }
                 }
+
+                eventParsers.recordLine(matched, tried);
             }
         }
     }
@@ -160,33 +201,42 @@ public class ServerManager implements Runnable {
             return;
         }
         getState().minepassStarted = true;
+        eventParsers.refresh();
 
-        // Whitelist mode.
-        if (wrapper.getMinepass().getEnforceWhitelist()) {
-            logger.info("Requiring whitelist enabled", this);
-            sendServerCommand("whitelist on");
-        } else {
-            logger.warn("|     .^.                                             .^.     |", this);
-            logger.warn("|    / ! \\            WHITELIST DISABLED             / ! \\    |", this);
-            logger.warn("|   '-----'                                         '-----'   |", this);
-            logger.warn("MinePass option [enforce_whitelist]=false", this);
-            logger.warn("This server will be OPEN to unregistered visitors.", this);
-            logger.warn("MinePass can only manage privileges of registered players.", this);
-            logger.warn("If you are trying to accommodate existing players,", this);
-            logger.warn("  consider using the Import/Bypass feature of the web-portal.", this);
-            sendServerCommand("whitelist off");
-        }
+        this.startupTime = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        logger.info(String.format("Server started in %.1fs (class data sharing: %s)",
+                startupTime / 1000.0, ClassDataSharing.getMode()), this);
+
+        applyWhitelistMode();
 
         // Start sync thread.
-        this.syncThread = new Thread(new TxSync(wrapper.getMinepass(), 10));
-        syncThread.setDaemon(false);  // ensure any disk writing finishes
+        this.syncScheduler = new SyncScheduler(wrapper);
+        this.syncThread = new Thread(syncScheduler, "MinePass Sync");
+        syncThread.setDaemon(true);  // disk writes are waited for by the ShutdownCoordinator
+        wrapper.getResourceMonitor().register(syncThread, ResourceMonitor.Subsystem.SYNC);
         syncThread.start();
 
         // Start scheduled tasks.
         this.scheduledTasks = new Thread(new ScheduledTasks(wrapper), "MinePass");
         scheduledTasks.setDaemon(true);
+        wrapper.getResourceMonitor().register(scheduledTasks, ResourceMonitor.Subsystem.TASKS);
         scheduledTasks.start();
 
+        // Start session reporting.
+        this.telemetryThread = new Thread(sessionTelemetry, "MinePass Telemetry");
+        telemetryThread.setDaemon(true);
+        wrapper.getResourceMonitor().register(telemetryThread, ResourceMonitor.Subsystem.TELEMETRY);
+        telemetryThread.start();
+
+        // Start stall detection.
+        this.stallWatchdog = StallWatchdog.fromConfig(wrapper);
+        if (stallWatchdog != null) {
+            this.watchdogThread = new Thread(stallWatchdog, "MinePass Watchdog");
+            watchdogThread.setDaemon(true);
+            wrapper.getResourceMonitor().register(watchdogThread, ResourceMonitor.Subsystem.WATCHDOG);
+            watchdogThread.start();
+        }
+
         // Output MinePass logo.
         for (String x : MPAsciiArt.getLogo("System Ready")) {
             logger.info(x, null);
@@ -208,52 +258,238 @@ public class ServerManager implements Runnable {
         wrapper.getMinepass().sendObject(details, null);
     }
 
-    public void stopMinePass() {
-        if (syncThread != null) {
-            syncThread.interrupt();
+    /**
+     * Send the whitelist mode matching the enforce_whitelist setting.
+     */
+    public void applyWhitelistMode() {
+        if (wrapper.getEnforceWhitelist()) {
+            logger.info("Requiring whitelist enabled", this);
+            sendServerCommand(CommandLane.SECURITY, "whitelist on");
+        } else {
+            logger.warn("|     .^.                                             .^.     |", this);
+            logger.warn("|    / ! \\            WHITELIST DISABLED             / ! \\    |", this);
+            logger.warn("|   '-----'                                         '-----'   |", this);
+            logger.warn("MinePass option [enforce_whitelist]=false", this);
+            logger.warn("This server will be OPEN to unregistered visitors.", this);
+            logger.warn("MinePass can only manage privileges of registered players.", this);
+            logger.warn("If you are trying to accommodate existing players,", this);
+            logger.warn("  consider using the Import/Bypass feature of the web-portal.", this);
+            sendServerCommand(CommandLane.SECURITY, "whitelist off");
         }
-        if (scheduledTasks != null) {
-            scheduledTasks.interrupt();
+    }
+
+    public void stopMinePass() {
+        ShutdownCoordinator shutdown = new ShutdownCoordinator(wrapper);
+        shutdown.addWorker(scheduledTasks);
+        shutdown.addWorker(telemetryThread);
+        shutdown.addWorker(watchdogThread);
+        shutdown.setSyncThread(syncThread);
+        shutdown.run();
+        logger.info(eventParsers.getStatsSummary(), this);
+    }
+
+    /**
+     * Called once the Minecraft version has been read from the startup log.
+     */
+    public void minecraftVersionDetected(String minecraftVersion) {
+        getState().minecraftVersion = minecraftVersion;
+        eventParsers.versionDetected(minecraftVersion);
+    }
+
+    public NamePool getNamePool() {
+        return namePool;
+    }
+
+    public EventParserRegistry getEventParsers() {
+        return eventParsers;
+    }
+
+    public PassCache getPassCache() {
+        return passCache;
+    }
+
+    public JoinTracer getJoinTracer() {
+        return joinTracer;
+    }
+
+    /**
+     * @return milliseconds from JVM launch to the server's "Done", or 0 until then
+     */
+    public long getStartupTime() {
+        return startupTime;
+    }
+
+    /**
+     * @return the stall watchdog, or null if disabled or not started
+     */
+    public StallWatchdog getStallWatchdog() {
+        return stallWatchdog;
+    }
+
+    public TickHealth getTickHealth() {
+        return tickHealth;
+    }
+
+    /**
+     * Duration of each ScheduledTasks run, including sending its messages.
+     */
+    public LatencyHistogram getTaskRunTime() {
+        return taskRunTime;
+    }
+
+    public CommandTracker getCommandTracker() {
+        return commandTracker;
+    }
+
+    public JoinGate getJoinGate() {
+        return joinGate;
+    }
+
+    public SyncScheduler getSyncScheduler() {
+        return syncScheduler;
+    }
+
+    public SessionTelemetry getSessionTelemetry() {
+        return sessionTelemetry;
+    }
+
+    public DecisionJournal getDecisionJournal() {
+        return decisionJournal;
+    }
+
+    /**
+     * Append to the decision journal, if enabled.
+     *
+     * @see DecisionJournal#record(DecisionJournal.Type, UUID, String, int)
+     */
+    public void recordDecision(DecisionJournal.Type type, UUID playerId, String name, int value) {
+        if (decisionJournal != null) {
+            decisionJournal.record(type, playerId, name, value);
         }
-        getState().minepassStarted = false;
     }
 
     public void setPlayerGameMode(String name, Integer mode) {
-        sendServerCommand("gamemode", mode.toString(), String.format("@a[name=%s,m=!%s]", name, mode.toString()));
+        String command = String.format("gamemode %s @a[name=%s,m=!%s]", mode, name, mode);
+        sendServerCommand(CommandLane.STANDARD, command);
+        recordDecision(DecisionJournal.Type.GAMEMODE_SET, getState().players.getAuthUUID(name), name, mode);
+    }
+
+    public void tellPlayerRaw(String name, CharSequence rawMessage) {
+        StringBuilder sb = commandBuffer.get();
+        sb.setLength(0);
+        sb.append("tellraw ").append(name).append(' ').append(rawMessage);
+        sendServerCommand(CommandLane.COSMETIC, sb.toString());
     }
 
-    public void tellPlayerRaw(String name, String rawMessage) {
-        sendServerCommand("tellraw", name, rawMessage);
+    public void warnPlayer(String name, String message) {
+        tellPlayerRaw(name, JsonText.local().text(message, "gold").end());
+    }
+
+    public void warnPlayerPass(String name, String message, String joinUrl) {
+        tellPlayerRaw(name, JsonText.local().link(message, "aqua", joinUrl).end());
+        tellPlayerRaw(name, JsonText.local().append(passHint.render(joinUrl)).end());
+    }
+
+    /**
+     * Send the same raw message to several players with as few commands as possible.
+     * <p/>
+     * All online players are reached with a single @a selector. On 1.13+ servers a
+     * group covering most players is reached with @a plus name exclusions. Anyone
+     * else is messaged individually, so a group of fewer than half the players
+     * costs one command per player (tagging them first would cost as many).
+     * <p/>
+     * Selectors reach whoever the server has online, while the group is built from
+     * the PlayerRegistry. A player whose login line was dropped would also receive
+     * the message, so selectors are only used while no login or logout lines have
+     * been dropped by the log queue.
+     *
+     * @param playerIds the recipients
+     * @param rawMessage the JSON text component
+     */
+    public void tellPlayersRaw(Collection<UUID> playerIds, CharSequence rawMessage) {
+        if (playerIds.size() == 1) {
+            tellPlayerRaw(playerIds.iterator().next().toString(), rawMessage);
+            return;
+        }
+
+        ArrayList<String> excluded = new ArrayList<>();
+        int online = 0;
+        for (Map.Entry<UUID, String> entry : getState().players.getOnlinePlayers().entrySet()) {
+            online++;
+            if (!playerIds.contains(entry.getKey())) {
+                excluded.add(entry.getValue());
+            }
+        }
+        int included = online - excluded.size();
+
+        if (included == playerIds.size() && logQueue.getPriorityDropped() == 0) {
+            if (excluded.isEmpty()) {
+                tellPlayerRaw("@a", rawMessage);
+                return;
+            }
+            if (excluded.size() < included && supportsMultipleNameExclusions()) {
+                StringBuilder selector = new StringBuilder("@a[");
+                for (int i = 0; i < excluded.size(); i++) {
+                    selector.append(i > 0 ? ",name=!" : "name=!").append(excluded.get(i));
+                }
+                tellPlayerRaw(selector.append(']').toString(), rawMessage);
+                return;
+            }
+        }
+
+        for (UUID playerId : playerIds) {
+            tellPlayerRaw(playerId.toString(), rawMessage);
+        }
+    }
+
+    public MessageBatch newMessageBatch() {
+        return new MessageBatch(this);
     }
 
     public void tellPlayer(String name, String message) {
-        sendServerCommand("tell", name, message);
+        sendServerCommand(CommandLane.COSMETIC, "tell", name, message);
     }
 
     public void kickPlayer(String name, String message) {
-        sendServerCommand("kick", name, message);
+        if (name == null) {
+            wrapper.getLogger().warn("Could not kick player without a known name", this);
+            return;
+        }
+        String command = "kick " + name + " " + message;
+        sendServerCommand(CommandLane.SECURITY, command);
+        commandTracker.issued(CommandTracker.Type.KICK, name, command, CommandLane.SECURITY);
+        recordDecision(DecisionJournal.Type.KICK_ISSUED, getState().players.getAuthUUID(name), name, -1);
     }
 
-    private String getNextLogEvent() {
-        try {
-            return (String) getNextLogEventMethod.invoke(null, getNextLogEventArgs);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
-        }
+    private boolean supportsMultipleNameExclusions() {
+        String version = getState().minecraftVersion;
+        return version != null && EventParser.versionCompare(version, "1.13") >= 0;
+    }
 
-        return null;
+    private void reportDroppedLines() {
+        long dropped = logQueue.getDropped();
+        long priorityDropped = logQueue.getPriorityDropped();
+        if ((dropped != reportedDrops || priorityDropped != reportedPriorityDrops)
+                && System.currentTimeMillis() - lastDropReport > 10000) {
+            lastDropReport = System.currentTimeMillis();
+            logger.warn(String.format("Server log is backlogged, skipped %d lines (%d total, %d lossless)",
+                    dropped - reportedDrops + priorityDropped - reportedPriorityDrops,
+                    dropped + priorityDropped, priorityDropped), this);
+            reportedDrops = dropped;
+            reportedPriorityDrops = priorityDropped;
+        }
     }
 
-    private void sendServerCommand(String command, String... params) {
+    private void sendServerCommand(CommandLane lane, String command, String... params) {
         StringBuilder sb = new StringBuilder(command);
         for (String p : params) {
             sb.append(" ").append(p);
         }
-        sendServerCommand(sb.toString());
+        sendServerCommand(lane, sb.toString());
     }
 
-    private void sendServerCommand(String command) {
-        wrapper.getConsoleManager().sendCommand(command);
+    private void sendServerCommand(CommandLane lane, String command) {
+        wrapper.getConsoleManager().sendCommand(command, lane);
     }
 
     private CommonState getState() {
@@ -0,0 +1,145 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+/**
+ * Aggregates player sessions and periodically reports them to MinePass.
+ * <p/>
+ * Logins and logouts update a fixed set of counters and a duration
+ * histogram, so memory use does not grow with the number of sessions.
+ * Session start times are kept by the PlayerRegistry.
+ * <p/>
+ * Summaries are sent from the "MinePass Telemetry" thread, never from the
+ * parser thread. The reporting interval doubles while nothing happens
+ * (up to MAX_INTERVAL), and periods with no sessions and nobody online
+ * are not reported at all.
+ *
+ * @see SessionSummary
+ * @see PlayerRegistry#logout(String)
+ */
+public class SessionTelemetry implements Runnable {
+
+    static final long BASE_INTERVAL = 5 * 60 * 1000;
+    static final long MAX_INTERVAL = 60 * 60 * 1000;
+    static final int DURATION_BUCKETS = 28;  // up to ~37 hours
+
+    private final MP_MinecraftWrapper wrapper;
+
+    // Current period, guarded by this.
+    private long periodStart = System.currentTimeMillis();
+    private int started = 0;
+    private int ended = 0;
+    private long totalMillis = 0;
+    private long maxMillis = 0;
+    private int peakOnline = 0;
+    private LatencyHistogram durations = new LatencyHistogram(DURATION_BUCKETS);
+
+    private volatile long interval = BASE_INTERVAL;
+    private volatile long sent = 0;
+
+    public SessionTelemetry(MP_MinecraftWrapper wrapper) {
+        this.wrapper = wrapper;
+    }
+
+    public synchronized void sessionStarted() {
+        started++;
+        peakOnline = Math.max(peakOnline, wrapper.getState().players.getOnlineCount());
+    }
+
+    /**
+     * @param loginTime when the session started, from PlayerRegistry#logout
+     */
+    public synchronized void sessionEnded(long loginTime) {
+        long duration = System.currentTimeMillis() - loginTime;
+        ended++;
+        totalMillis += duration;
+        maxMillis = Math.max(maxMillis, duration);
+        durations.record(duration);
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                flush();  // final period on shutdown
+                return;
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        SessionSummary summary = closePeriod();
+        boolean active = summary.sessions_started > 0 || summary.sessions_ended > 0;
+        interval = active ? BASE_INTERVAL : Math.min(interval * 2, MAX_INTERVAL);
+
+        if (!active && summary.online_end == 0) {
+            return;
+        }
+
+        try {
+            wrapper.getMinepass().sendObject(summary, null);
+            sent++;
+        } catch (RuntimeException e) {
+            wrapper.getLogger().warn("Could not send session summary: ".concat(String.valueOf(e.getMessage())), this);
+        }
+    }
+
+    private synchronized SessionSummary closePeriod() {
+        long now = System.currentTimeMillis();
+        int online = wrapper.getState().players.getOnlineCount();
+
+        SessionSummary s = new SessionSummary();
+        s.period_start = periodStart / 1000;
+        s.period_end = now / 1000;
+        s.sessions_started = started;
+        s.sessions_ended = ended;
+        s.session_seconds_total = totalMillis / 1000;
+        s.session_seconds_max = maxMillis / 1000;
+        s.session_seconds_p50 = durations.getPercentile(50) / 1000;
+        s.session_seconds_p90 = durations.getPercentile(90) / 1000;
+        s.online_peak = Math.max(peakOnline, online);
+        s.online_end = online;
+
+        periodStart = now;
+        started = 0;
+        ended = 0;
+        totalMillis = 0;
+        maxMillis = 0;
+        peakOnline = online;
+        durations = new LatencyHistogram(DURATION_BUCKETS);
+        return s;
+    }
+}
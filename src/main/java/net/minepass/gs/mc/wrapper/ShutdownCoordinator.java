@@ -0,0 +1,162 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the MinePass shutdown in ordered phases, each with a deadline.
+ * <p/>
+ * <ol>
+ * <li>Stop intake: parsers are disabled and the console manager stops
+ * accepting wrapper commands.</li>
+ * <li>Drain commands: security commands (kicks, whitelist) are given time
+ * to reach the server, standard commands get whatever is left of the
+ * deadline, and cosmetic messages are cancelled.</li>
+ * <li>Stop workers: scheduled tasks, telemetry, the stall watchdog and
+ * pass prefetching are interrupted and waited for, so final reports are
+ * handed to MinePass while the sync loop is still running.</li>
+ * <li>Flush state: the decision journal is forced to disk.</li>
+ * <li>Stop sync: the sync loop is stopped and waited for, so an in-flight
+ * sync can complete its disk writes. It no longer holds up JVM exit
+ * beyond this deadline.</li>
+ * </ol>
+ * A timing report is logged for each phase.
+ *
+ * @see ServerManager#stopMinePass()
+ */
+public class ShutdownCoordinator {
+
+    static final long SECURITY_DRAIN_DEADLINE = 1000;
+    static final long COMMAND_DRAIN_DEADLINE = 2000;
+    static final long WORKER_DEADLINE = 2000;
+    static final long SYNC_DEADLINE = 10000;
+
+    private final MP_MinecraftWrapper wrapper;
+    private final ArrayList<Thread> workers = new ArrayList<>();
+    private final ArrayList<String> stuck = new ArrayList<>();
+    private final StringBuilder report = new StringBuilder("Shutdown:");
+    private Thread syncThread;
+    private String separator = " ";
+    private long phaseStart;
+
+    public ShutdownCoordinator(MP_MinecraftWrapper wrapper) {
+        this.wrapper = wrapper;
+    }
+
+    /**
+     * Add a worker thread to be interrupted and joined.
+     *
+     * @param thread the thread, ignored if null
+     */
+    public void addWorker(Thread thread) {
+        if (thread != null) {
+            workers.add(thread);
+        }
+    }
+
+    public void setSyncThread(Thread thread) {
+        this.syncThread = thread;
+    }
+
+    public void run() {
+        ServerManager server = wrapper.getServerManager();
+        ConsoleManager console = wrapper.getConsoleManager();
+        long start = System.nanoTime();
+
+        phase(null);
+        wrapper.getState().minepassStarted = false;
+        server.getEventParsers().refresh();
+        console.close();
+        phase("stop intake");
+
+        long drainStart = System.currentTimeMillis();
+        int drained = console.awaitDrained(CommandLane.SECURITY, drainStart + SECURITY_DRAIN_DEADLINE);
+        drained += console.awaitDrained(CommandLane.STANDARD, drainStart + COMMAND_DRAIN_DEADLINE);
+        int cancelled = 0;
+        for (CommandLane lane : CommandLane.values()) {
+            if (lane != CommandLane.CONSOLE) {
+                cancelled += console.cancel(lane);
+            }
+        }
+        phase(String.format("drain commands (%d sent, %d cancelled)", drained, cancelled));
+
+        server.getPassCache().shutdown();
+        server.getJoinGate().shutdown();
+        for (Thread t : workers) {
+            t.interrupt();
+        }
+        join(workers, System.currentTimeMillis() + WORKER_DEADLINE);
+        phase("stop workers");
+
+        if (server.getDecisionJournal() != null) {
+            server.getDecisionJournal().close();
+        }
+        phase("flush state");
+
+        if (syncThread != null) {
+            server.getSyncScheduler().shutdown();
+            join(Collections.singletonList(syncThread), System.currentTimeMillis() + SYNC_DEADLINE);
+        }
+        phase("stop sync");
+
+        report.append(String.format("; total %dms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        if (stuck.isEmpty()) {
+            wrapper.getLogger().info(report.toString(), this);
+        } else {
+            wrapper.getLogger().warn(report.append("; still running: ").append(stuck).toString(), this);
+        }
+    }
+
+    private void join(List<Thread> threads, long deadline) {
+        for (Thread t : threads) {
+            long remaining = deadline - System.currentTimeMillis();
+            try {
+                if (remaining > 0) {
+                    t.join(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (t.isAlive()) {
+                stuck.add(t.getName());
+            }
+        }
+    }
+
+    private void phase(String name) {
+        long now = System.nanoTime();
+        if (name != null) {
+            report.append(separator)
+                    .append(name).append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMillis(now - phaseStart)).append("ms");
+            separator = ", ";
+        }
+        phaseStart = now;
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Detects a hung server thread and captures thread dumps for later diagnosis.
+ * <p/>
+ * The server thread is considered to make progress whenever it logs a
+ * line, reports that it can't keep up (which it only does after completing
+ * a tick), is seen waiting for the next tick in the server loop itself, or
+ * is sampled working somewhere it was not seen within the last threshold.
+ * Frames of the server's own loop classes and the JDK at the top of the
+ * stack are ignored for the comparison, so a thread spinning on a chunk
+ * future that never completes (1.14+) settles on a few repeating samples.
+ * The stack is only sampled in checks without a new log line or warning.
+ * Once none of these have been seen for [stall_threshold] seconds
+ * (default 30, 0 disables), all thread stacks are written with their lock
+ * owners, then again each threshold while the stall lasts, up to
+ * MAX_DUMPS_PER_STALL.
+ * <p/>
+ * Dumps go to minepass-diagnostics/, where the most recent KEEP_FILES are
+ * kept. Only armed after the server has finished starting, and stopped
+ * by the ShutdownCoordinator before the world is saved.
+ *
+ * @see MinePassLogFilter#getLastServerEvent()
+ * @see TickHealth
+ */
+public class StallWatchdog implements Runnable {
+
+    static final String SERVER_THREAD = "Server thread";
+    static final long CHECK_INTERVAL = 1000;
+    static final long DEFAULT_THRESHOLD = 30000;
+    static final long PAUSE_ALLOWANCE = 5000;  // a longer gap between checks means the JVM was paused
+    static final int MAX_DUMPS_PER_STALL = 3;
+
+    static final String DIAGNOSTICS_DIR = "minepass-diagnostics";
+    static final String FILE_PREFIX = "stall-";
+    static final String FILE_SUFFIX = ".txt";
+    static final int KEEP_FILES = 20;
+
+    private final MP_MinecraftWrapper wrapper;
+    private final long threshold;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final File directory = new File(DIAGNOSTICS_DIR);
+
+    private final int window;
+
+    private long serverThreadId = -1;
+    private String serverClassName;
+    private Class<?> serverClass;
+    private ClassLoader serverLoader;
+    private final HashMap<String, Boolean> loopClasses = new HashMap<>();
+    private final ArrayDeque<List<StackTraceElement>> recentWork = new ArrayDeque<>();
+    private long lastProgress;
+    private long lastLogEvent;
+    private long lastWarnings;
+    private int dumpsThisStall = 0;
+
+    private volatile long stalls = 0;
+    private volatile long dumps = 0;
+    private volatile boolean stalled = false;
+
+    /**
+     * @return the watchdog, or null if disabled by configuration
+     */
+    public static StallWatchdog fromConfig(MP_MinecraftWrapper wrapper) {
+        long threshold = DEFAULT_THRESHOLD;
+        String value = MP_MinecraftWrapper.config.getProperty("stall_threshold", "").trim();
+        if (!value.isEmpty()) {
+            try {
+                threshold = Long.parseLong(value) * 1000;
+            } catch (NumberFormatException e) {
+                wrapper.getLogger().warn("Invalid stall_threshold " + value + ", using default", null);
+            }
+        }
+        return threshold > 0 ? new StallWatchdog(wrapper, threshold) : null;
+    }
+
+    public StallWatchdog(MP_MinecraftWrapper wrapper, long threshold) {
+        this.wrapper = wrapper;
+        this.threshold = threshold;
+        this.window = (int) Math.max(1, threshold / CHECK_INTERVAL);
+    }
+
+    public boolean isStalled() {
+        return stalled;
+    }
+
+    public long getStalls() {
+        return stalls;
+    }
+
+    public long getDumps() {
+        return dumps;
+    }
+
+    @Override
+    public void run() {
+        TickHealth health = wrapper.getServerManager().getTickHealth();
+        long lastCheck = System.currentTimeMillis();
+        lastProgress = lastCheck;
+        lastLogEvent = MinePassLogFilter.getLastServerEvent();
+        lastWarnings = health.getWarnings();
+
+        while (true) {
+            try {
+                Thread.sleep(CHECK_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastCheck > PAUSE_ALLOWANCE) {
+                lastProgress = now;  // GC pause or host suspend, not a stall
+            }
+            lastCheck = now;
+
+            if (progressed(health)) {
+                if (stalled) {
+                    stalled = false;
+                    wrapper.getLogger().info(String.format("Server thread resumed after %ds",
+                            (now - lastProgress) / 1000), this);
+                }
+                lastProgress = now;
+                dumpsThisStall = 0;
+                continue;
+            }
+
+            long idle = now - lastProgress;
+            if (idle >= threshold * (dumpsThisStall + 1) && dumpsThisStall < MAX_DUMPS_PER_STALL) {
+                if (!stalled) {
+                    stalled = true;
+                    stalls++;
+                }
+                dumpsThisStall++;
+                dump(idle);
+            }
+        }
+    }
+
+    private boolean progressed(TickHealth health) {
+        boolean progressed = false;
+
+        long logEvent = MinePassLogFilter.getLastServerEvent();
+        if (logEvent != lastLogEvent) {
+            lastLogEvent = logEvent;
+            progressed = true;
+        }
+
+        long warnings = health.getWarnings();
+        if (warnings != lastWarnings) {
+            lastWarnings = warnings;
+            progressed = true;
+        }
+        if (progressed) {
+            return true;  // no need to walk the server thread's stack
+        }
+
+        ThreadInfo info = serverThreadId < 0 ? null : threads.getThreadInfo(serverThreadId, Integer.MAX_VALUE);
+        if (info == null) {
+            findServerThread();
+            info = serverThreadId < 0 ? null : threads.getThreadInfo(serverThreadId, Integer.MAX_VALUE);
+        }
+        if (info == null) {
+            return true;  // no server thread to watch
+        }
+
+        StackTraceElement[] stack = info.getStackTrace();
+        int top = 0;
+        while (top < stack.length && isServerLoop(stack[top].getClassName())) {
+            top++;
+        }
+        List<StackTraceElement> work = Arrays.asList(stack).subList(top, stack.length);
+
+        // Only filled during quiet checks, which are the ones a stall consists of.
+        boolean waiting = work.isEmpty() && info.getThreadState() == Thread.State.TIMED_WAITING;  // for the next tick
+        boolean moved = !recentWork.contains(work);
+        recentWork.addLast(work);
+        if (recentWork.size() > window) {
+            recentWork.removeFirst();
+        }
+        return waiting || moved;
+    }
+
+    private void findServerThread() {
+        serverThreadId = -1;
+        serverClassName = null;
+        serverClass = null;
+        loopClasses.clear();
+        recentWork.clear();
+
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (!t.getName().equals(SERVER_THREAD)) {
+                continue;
+            }
+            serverThreadId = t.getId();
+            serverLoader = t.getContextClassLoader();
+
+            // The outermost non-JDK frame is the server's run loop.
+            StackTraceElement[] stack = t.getStackTrace();
+            for (int i = stack.length - 1; i >= 0; i--) {
+                if (!isJdk(stack[i].getClassName())) {
+                    serverClassName = stack[i].getClassName();
+                    break;
+                }
+            }
+            if (serverClassName != null && serverLoader != null) {
+                try {
+                    serverClass = Class.forName(serverClassName, false, serverLoader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // Match by name only.
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Whether a frame belongs to the server loop, i.e. the JDK, the server class or
+     * its event loop superclasses (1.14+) and their subclasses (e.g. chunk executors).
+     */
+    private boolean isServerLoop(String className) {
+        if (isJdk(className) || className.equals(serverClassName)) {
+            return true;
+        }
+        Boolean known = loopClasses.get(className);
+        if (known == null) {
+            known = false;
+            if (serverClass != null) {
+                try {
+                    Class<?> c = Class.forName(className, false, serverLoader);
+                    for (Class<?> s = serverClass; s != null && s != Object.class; s = s.getSuperclass()) {
+                        if (s.isAssignableFrom(c)) {
+                            known = true;
+                            break;
+                        }
+                    }
+                } catch (ClassNotFoundException | LinkageError e) {
+                    // Not a loop class.
+                }
+            }
+            loopClasses.put(className, known);
+        }
+        return known;
+    }
+
+    private static boolean isJdk(String className) {
+        return className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.");
+    }
+
+    // Thread Dumps
+    // ------------------------------------------------------------------------------------------------------------- //
+
+    private void dump(long idle) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            wrapper.getLogger().warn(String.format("Server thread has not progressed for %ds, could not create %s",
+                    idle / 1000, DIAGNOSTICS_DIR), this);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        File file = new File(directory, FILE_PREFIX + now + FILE_SUFFIX);
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writeDump(out, now, idle);
+        } catch (IOException | RuntimeException e) {
+            wrapper.getLogger().warn(String.format("Server thread has not progressed for %ds, thread dump failed: %s",
+                    idle / 1000, e.getMessage()), this);
+            return;
+        }
+        dumps++;
+        wrapper.getLogger().warn(String.format("Server thread has not progressed for %ds, thread dump written to %s",
+                idle / 1000, file.getPath()), this);
+
+        File[] files = listFiles(directory);
+        for (int i = 0; i < files.length - KEEP_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    private void writeDump(PrintWriter out, long now, long idle) {
+        TickHealth health = wrapper.getServerManager().getTickHealth();
+        out.println("MinePass stall report, " + new Date(now));
+        out.println("Wrapper " + wrapper.getWrapperVersion() + ", Minecraft " + wrapper.getState().minecraftVersion);
+        out.println(String.format("Server thread without progress for %dms, last server log line %s, "
+                        + "%d lag warnings (last %dms behind)",
+                idle, lastLogEvent > 0 ? (now - lastLogEvent) + "ms ago" : "never",
+                health.getWarnings(), health.getLastBehind()));
+        out.println();
+
+        ThreadInfo[] infos = threads.dumpAllThreads(threads.isObjectMonitorUsageSupported(),
+                threads.isSynchronizerUsageSupported());
+
+        long[] deadlocked = threads.isSynchronizerUsageSupported()
+                ? threads.findDeadlockedThreads() : threads.findMonitorDeadlockedThreads();
+        if (deadlocked != null) {
+            out.print("Deadlocked threads:");
+            for (ThreadInfo info : infos) {
+                for (long id : deadlocked) {
+                    if (info.getThreadId() == id) {
+                        out.print(" \"" + info.getThreadName() + "\"");
+                    }
+                }
+            }
+            out.println();
+            out.println();
+        }
+
+        // Server thread first.
+        for (ThreadInfo info : infos) {
+            if (info.getThreadId() == serverThreadId) {
+                writeThread(out, info);
+            }
+        }
+        for (ThreadInfo info : infos) {
+            if (info.getThreadId() != serverThreadId) {
+                writeThread(out, info);
+            }
+        }
+    }
+
+    /**
+     * Write a thread in the style of jstack, without ThreadInfo#toString's frame limit.
+     */
+    private static void writeThread(PrintWriter out, ThreadInfo info) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('"').append(info.getThreadName()).append("\" #").append(info.getThreadId());
+        sb.append(' ').append(info.getThreadState());
+        if (info.getLockName() != null) {
+            sb.append(" on ").append(info.getLockName());
+        }
+        if (info.getLockOwnerName() != null) {
+            sb.append(" owned by \"").append(info.getLockOwnerName()).append("\" #").append(info.getLockOwnerId());
+        }
+        if (info.isSuspended()) {
+            sb.append(" (suspended)");
+        }
+        if (info.isInNative()) {
+            sb.append(" (in native)");
+        }
+        out.println(sb);
+
+        StackTraceElement[] stack = info.getStackTrace();
+        MonitorInfo[] monitors = info.getLockedMonitors();
+        for (int i = 0; i < stack.length; i++) {
+            out.println("\tat " + stack[i]);
+            if (i == 0 && info.getLockInfo() != null) {
+                switch (info.getThreadState()) {
+                    case BLOCKED:
+                        out.println("\t-  blocked on " + info.getLockInfo());
+                        break;
+                    case WAITING:
+                    case TIMED_WAITING:
+                        out.println("\t-  waiting on " + info.getLockInfo());
+                        break;
+                    default:
+                }
+            }
+            for (MonitorInfo m : monitors) {
+                if (m.getLockedStackDepth() == i) {
+                    out.println("\t-  locked " + m);
+                }
+            }
+        }
+
+        LockInfo[] synchronizers = info.getLockedSynchronizers();
+        if (synchronizers.length > 0) {
+            out.println("\tLocked synchronizers:");
+            for (LockInfo s : synchronizers) {
+                out.println("\t- " + s);
+            }
+        }
+        out.println();
+    }
+
+    /**
+     * List dump files in a directory, oldest first.
+     */
+    static File[] listFiles(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);  // equal-length millisecond names sort by time
+        return files;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import net.minepass.api.gameserver.embed.solidtx.TxSync;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adaptive replacement for the fixed-interval TxSync loop.
+ * <p/>
+ * The sync interval backs off exponentially while the server is empty or
+ * the MinePass data has not changed, and is shortened during join waves.
+ * <p/>
+ * Parsers may request an immediate sync for a player whose pass could not
+ * be found, so newly registered players are picked up within seconds.
+ * Such players are then tracked until their pass arrives (or the request
+ * expires) and syncing continues at the minimum interval in the meantime.
+ *
+ * @see TxSync
+ * @see ServerManager#startMinePass()
+ */
+public class SyncScheduler implements Runnable {
+
+    static final long MIN_INTERVAL = 2000;          // join waves and pending pass lookups
+    static final long BASE_INTERVAL = 10000;        // previous fixed TxSync interval
+    static final long MAX_OCCUPIED_INTERVAL = 60000;
+    static final long MAX_IDLE_INTERVAL = 300000;
+
+    static final long JOIN_WAVE_WINDOW = 60000;
+    static final int JOIN_WAVE_THRESHOLD = 3;
+    static final long PENDING_LOOKUP_EXPIRY = 60000;
+
+    private final MP_MinecraftWrapper wrapper;
+    private final Object monitor = new Object();
+
+    /**
+     * Players without a pass at login, mapped to the time their lookup expires.
+     */
+    private final ConcurrentHashMap<UUID, Long> pendingLookups = new ConcurrentHashMap<>();
+
+    private volatile boolean dataChanged = false;
+    private volatile boolean stopping = false;
+    private boolean syncRequested = false;
+    private long interval = BASE_INTERVAL;
+    private long lastSync = 0;
+
+    private long joinWindowStart = 0;
+    private int joinWindowCount = 0;
+
+    public SyncScheduler(MP_MinecraftWrapper wrapper) {
+        this.wrapper = wrapper;
+    }
+
+    /**
+     * Request an immediate sync on behalf of a player with no known pass.
+     *
+     * @param playerId the player UUID as presented by the authenticator
+     */
+    public void requestSync(UUID playerId) {
+        if (playerId != null) {
+            if (pendingLookups.put(playerId, System.currentTimeMillis() + PENDING_LOOKUP_EXPIRY) != null) {
+                return;  // already pending, next sync is at most MIN_INTERVAL away
+            }
+            wrapper.getLogger().debug("Requesting sync for player ".concat(playerId.toString()), this);
+        }
+        synchronized (monitor) {
+            syncRequested = true;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Record a player login, used to detect join waves.
+     */
+    public void notifyJoin() {
+        synchronized (monitor) {
+            long now = System.currentTimeMillis();
+            if (now - joinWindowStart > JOIN_WAVE_WINDOW) {
+                joinWindowStart = now;
+                joinWindowCount = 0;
+            }
+            joinWindowCount++;
+
+            // Cut short a long idle back-off as soon as players arrive.
+            if (interval > BASE_INTERVAL) {
+                interval = BASE_INTERVAL;
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Record that the last sync delivered new authorization data.
+     */
+    public void notifyDataChanged() {
+        dataChanged = true;
+    }
+
+    /**
+     * Stop after the current sync, if any. The sync itself is not
+     * interrupted, so its disk writes can complete.
+     */
+    public void shutdown() {
+        synchronized (monitor) {
+            stopping = true;
+            monitor.notifyAll();
+        }
+    }
+
+    public long getInterval() {
+        synchronized (monitor) {
+            return interval;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                awaitNextSync();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (stopping) {
+                return;
+            }
+
+            try {
+                wrapper.getMinepass().sync();
+            } catch (RuntimeException e) {
+                wrapper.getLogger().warn("MinePass sync failed: ".concat(String.valueOf(e.getMessage())), this);
+            }
+
+            if (stopping) {
+                return;
+            }
+
+            synchronized (monitor) {
+                lastSync = System.currentTimeMillis();
+                interval = nextInterval();
+            }
+        }
+    }
+
+    private void awaitNextSync() throws InterruptedException {
+        synchronized (monitor) {
+            long now;
+            while (!stopping && !syncRequested && (now = System.currentTimeMillis()) < lastSync + interval) {
+                monitor.wait(lastSync + interval - now);
+            }
+
+            // On-demand requests are still spaced to protect the API.
+            while (!stopping && (now = System.currentTimeMillis()) < lastSync + MIN_INTERVAL) {
+                monitor.wait(lastSync + MIN_INTERVAL - now);
+            }
+
+            syncRequested = false;
+        }
+    }
+
+    private long nextInterval() {
+        long now = System.currentTimeMillis();
+
+        if (resolvePendingLookups(now)) {
+            return MIN_INTERVAL;
+        }
+
+        if (now - joinWindowStart <= JOIN_WAVE_WINDOW && joinWindowCount >= JOIN_WAVE_THRESHOLD) {
+            return MIN_INTERVAL;
+        }
+
+        if (dataChanged) {
+            dataChanged = false;
+            return BASE_INTERVAL;
+        }
+
+        long ceiling = !wrapper.getState().players.hasOnlinePlayers() ? MAX_IDLE_INTERVAL : MAX_OCCUPIED_INTERVAL;
+        return Math.min(Math.max(interval, BASE_INTERVAL) * 2, ceiling);
+    }
+
+    /**
+     * Drop pending lookups that have been resolved or expired.
+     *
+     * @return true if any lookups are still pending
+     */
+    private boolean resolvePendingLookups(long now) {
+        Iterator<Map.Entry<UUID, Long>> i = pendingLookups.entrySet().iterator();
+        while (i.hasNext()) {
+            Map.Entry<UUID, Long> entry = i.next();
+            if (wrapper.getMinepass().getPlayer(entry.getKey()) != null) {
+                wrapper.getLogger().info("MinePass received for player ".concat(entry.getKey().toString()), this);
+                i.remove();
+            } else if (now > entry.getValue()) {
+                i.remove();
+            }
+        }
+        return !pendingLookups.isEmpty();
+    }
+}
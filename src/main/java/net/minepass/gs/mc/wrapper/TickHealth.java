@@ -0,0 +1,79 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+/**
+ * Tracks whether the server's main thread is falling behind, as reported
+ * by its "Can't keep up!" warnings.
+ * <p/>
+ * The server logs these at most every 15 seconds, so it is considered to
+ * be lagging until LAG_HOLD has passed without another warning. While it
+ * lags, cosmetic and routine MinePass work is deferred and coalesced.
+ * Kicks are never deferred.
+ *
+ * @see net.minepass.gs.mc.wrapper.parsers.ServerLagEventParser
+ * @see ConsoleManager
+ * @see ScheduledTasks
+ */
+public class TickHealth {
+
+    static final long LAG_HOLD = 30000;
+
+    private volatile long laggingUntil = 0;
+    private volatile long lastBehind = 0;
+    private volatile long maxBehind = 0;
+    private volatile long warnings = 0;
+
+    /**
+     * Record a lag warning, called on the parser thread.
+     *
+     * @param behindMillis how far the server reported being behind
+     * @return true if the server was not already lagging
+     */
+    public boolean lagReported(long behindMillis) {
+        boolean started = !isLagging();
+        laggingUntil = System.currentTimeMillis() + LAG_HOLD;
+        lastBehind = behindMillis;
+        maxBehind = Math.max(maxBehind, behindMillis);
+        warnings++;
+        return started;
+    }
+
+    public boolean isLagging() {
+        return System.currentTimeMillis() < laggingUntil;
+    }
+
+    public long getLastBehind() {
+        return lastBehind;
+    }
+
+    public long getMaxBehind() {
+        return maxBehind;
+    }
+
+    public long getWarnings() {
+        return warnings;
+    }
+}
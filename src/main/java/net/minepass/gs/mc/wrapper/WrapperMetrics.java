@@ -0,0 +1,154 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects wrapper counters into a flat name=value snapshot.
+ * <p/>
+ * Used by the control socket and for diagnostic logging.
+ *
+ * @see ControlServer
+ */
+public final class WrapperMetrics {
+
+    private WrapperMetrics() {
+    }
+
+    public static Map<String, Object> collect(MP_MinecraftWrapper wrapper) {
+        TreeMap<String, Object> m = new TreeMap<>();
+        CommonState state = wrapper.getState();
+
+        m.put("minecraft.version", state.minecraftVersion);
+        m.put("minepass.started", state.minepassStarted);
+        m.put("players.known", state.players.size());
+        m.put("players.online", state.players.getOnlineCount());
+
+        ConsoleManager console = wrapper.getConsoleManager();
+        if (console != null) {
+            for (CommandLane lane : CommandLane.values()) {
+                String prefix = "commands." + lane.name().toLowerCase();
+                m.put(prefix + ".depth", console.getQueueDepth(lane));
+                m.put(prefix + ".depth_max", console.getMaxQueueDepth(lane));
+                m.put(prefix + ".sent", console.getSentCount(lane));
+            }
+        }
+
+        ResourceMonitor resources = wrapper.getResourceMonitor();
+        if (resources != null) {
+            for (ResourceMonitor.Subsystem subsystem : ResourceMonitor.Subsystem.values()) {
+                String prefix = "resources." + subsystem.name().toLowerCase();
+                m.put(prefix + ".cpu_ms", resources.getTotalCpu(subsystem) / 1000000);
+                m.put(prefix + ".allocated_kb", resources.getTotalAllocated(subsystem) / 1024);
+            }
+            ResourceMonitor.Sample sample = resources.getLast();
+            if (sample != null) {
+                m.put("resources.wrapper_cpu_pct", Math.round(sample.getWrapperCpuPercent() * 10) / 10.0);
+                m.put("resources.wrapper_allocated_pct", Math.round(sample.getWrapperAllocatedPercent() * 10) / 10.0);
+                m.put("resources.gc_count", sample.getGcCount());
+                m.put("resources.gc_ms", sample.getGcMillis());
+                m.put("resources.heap_used_kb", sample.getHeapUsed() / 1024);
+                m.put("resources.heap_max_kb", sample.getHeapMax() / 1024);
+            }
+        }
+
+        LogQueue logQueue = MinePassQueueAppender.getQueue();
+        m.put("log.depth", logQueue.getDepth());
+        m.put("log.bulk_depth_max", logQueue.getMaxBulkDepth());
+        m.put("log.priority", logQueue.getPriorityCount());
+        m.put("log.bulk", logQueue.getBulkCount());
+        m.put("log.dropped", logQueue.getDropped());
+        m.put("log.priority_dropped", logQueue.getPriorityDropped());
+
+        ServerManager server = wrapper.getServerManager();
+        if (server != null) {
+            m.put("parsers.lines", server.getEventParsers().getLines());
+            m.put("parsers.matched", server.getEventParsers().getMatchedLines());
+            m.put("parsers.filter.accepted", MinePassLogFilter.getAccepted());
+            m.put("parsers.filter.denied", MinePassLogFilter.getDenied());
+            m.put("passes.hits", server.getPassCache().getHits());
+            m.put("passes.negative_hits", server.getPassCache().getNegativeHits());
+            m.put("passes.misses", server.getPassCache().getMisses());
+            m.put("joins.early_rejections", server.getJoinGate().getRejections());
+            CommandTracker tracker = server.getCommandTracker();
+            m.put("acks.pending", tracker.getPendingCount());
+            for (CommandTracker.Type type : CommandTracker.Type.values()) {
+                String prefix = "acks." + type.name().toLowerCase();
+                LatencyHistogram latency = tracker.getLatency(type);
+                m.put(prefix + ".confirmed", tracker.getConfirmed(type));
+                m.put(prefix + ".retried", tracker.getRetried(type));
+                m.put(prefix + ".escalated", tracker.getEscalated(type));
+                m.put(prefix + ".latency_p50_ms", latency.getPercentile(50));
+                m.put(prefix + ".latency_p99_ms", latency.getPercentile(99));
+            }
+            JoinTracer tracer = server.getJoinTracer();
+            for (JoinTracer.Stage stage : JoinTracer.Stage.values()) {
+                if (stage == JoinTracer.Stage.AUTHENTICATED) {
+                    continue;
+                }
+                String prefix = "joins." + stage.name().toLowerCase();
+                m.put(prefix + ".p50_ms", tracer.getStageTime(stage).getPercentile(50));
+                m.put(prefix + ".p99_ms", tracer.getStageTime(stage).getPercentile(99));
+            }
+            m.put("joins.traced", tracer.getTotalTime().getCount());
+            m.put("joins.total.p50_ms", tracer.getTotalTime().getPercentile(50));
+            m.put("joins.total.p99_ms", tracer.getTotalTime().getPercentile(99));
+            m.put("server.startup_ms", server.getStartupTime());
+            TickHealth health = server.getTickHealth();
+            m.put("server.lagging", health.isLagging());
+            m.put("server.lag_warnings", health.getWarnings());
+            m.put("server.behind_last_ms", health.getLastBehind());
+            m.put("server.behind_max_ms", health.getMaxBehind());
+            if (server.getStallWatchdog() != null) {
+                m.put("server.stalled", server.getStallWatchdog().isStalled());
+                m.put("server.stalls", server.getStallWatchdog().getStalls());
+                m.put("server.stall_dumps", server.getStallWatchdog().getDumps());
+            }
+            m.put("tasks.runs", server.getTaskRunTime().getCount());
+            m.put("tasks.run_p50_ms", server.getTaskRunTime().getPercentile(50));
+            m.put("tasks.run_p99_ms", server.getTaskRunTime().getPercentile(99));
+            m.put("sessions.reports_sent", server.getSessionTelemetry().getSent());
+            m.put("sessions.report_interval_ms", server.getSessionTelemetry().getInterval());
+            if (server.getDecisionJournal() != null) {
+                m.put("journal.records", server.getDecisionJournal().getWritten());
+            }
+            if (server.getSyncScheduler() != null) {
+                m.put("sync.interval_ms", server.getSyncScheduler().getInterval());
+            }
+        }
+
+        return m;
+    }
+
+    public static String format(Map<String, Object> metrics) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> e : metrics.entrySet()) {
+            sb.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -24,14 +24,20 @@
 
 package net.minepass.gs.mc.wrapper.parsers;
 
+import net.minepass.gs.mc.wrapper.CharSlice;
 import net.minepass.gs.mc.wrapper.EventParser;
+import net.minepass.gs.mc.wrapper.JoinTracer;
 import net.minepass.gs.mc.wrapper.MP_MinecraftWrapper;
 
 import java.util.UUID;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class AuthenticatorEventParser extends EventParser {
 
+    private static final String[] markers = {"UUID of player "};
+    private static final Pattern lossless = Pattern.compile("UUID of player [A-Za-z0-9_]{1,16} is [a-f0-9-]+$");
+
     public AuthenticatorEventParser(MP_MinecraftWrapper wrapper) {
         super(wrapper);
     }
@@ -44,9 +50,11 @@ public class AuthenticatorEventParser extends EventParser {
     @Override
     protected Status run(Matcher m) {
         try {
-            UUID uuid = UUID.fromString(m.group("uuid"));
-            getState().playerAuthUUIDs.put(m.group("name"), uuid);
-            getState().playerAuthNames.put(uuid, m.group("name"));
+            UUID uuid = groupUUID(m, "uuid");
+            String name = groupName(m, "name");
+            getState().players.authenticated(name, uuid);
+            getServerManager().getJoinTracer().mark(uuid, JoinTracer.Stage.AUTHENTICATED);
+            getServerManager().getPassCache().prefetch(uuid);
         } catch (IllegalArgumentException e) {
             e.printStackTrace();
         }
@@ -59,7 +67,17 @@ public class AuthenticatorEventParser extends EventParser {
     }
 
     @Override
-    public boolean filterThread(String threadName) {
-        return threadName.matches("User Authenticator.*");
+    public boolean filterThread(CharSequence threadName) {
+        return CharSlice.startsWith(threadName, "User Authenticator");
+    }
+
+    @Override
+    protected String[] getMessageMarkers() {
+        return markers;
+    }
+
+    @Override
+    protected Pattern getLosslessPattern() {
+        return lossless;
     }
 }
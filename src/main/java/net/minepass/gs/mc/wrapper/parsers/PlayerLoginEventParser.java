@@ -24,9 +24,11 @@
 
 package net.minepass.gs.mc.wrapper.parsers;
 
-import net.minepass.api.gameserver.MPPlayer;
+import net.minepass.gs.mc.wrapper.DecisionJournal;
 import net.minepass.gs.mc.wrapper.EventParser;
+import net.minepass.gs.mc.wrapper.JoinTracer;
 import net.minepass.gs.mc.wrapper.MP_MinecraftWrapper;
+import net.minepass.gs.mc.wrapper.PlayerPrivileges;
 
 import java.util.UUID;
 import java.util.regex.Matcher;
@@ -34,6 +36,9 @@ import java.util.regex.Pattern;
 
 public class PlayerLoginEventParser extends EventParser {
 
+    private static final String[] markers = {"logged in with entity"};
+    private static final Pattern lossless = Pattern.compile("[A-Za-z0-9_]{1,16}\\[[^\\]]*\\] logged in with entity");
+
     public PlayerLoginEventParser(MP_MinecraftWrapper wrapper) {
         super(wrapper);
     }
@@ -45,6 +50,15 @@ public class PlayerLoginEventParser extends EventParser {
 
     @Override
     protected Status run(Matcher m) {
+        String playerLoginName = groupName(m, "name");
+        JoinTracer tracer = getServerManager().getJoinTracer();
+        tracer.mark(getState().players.getAuthUUID(playerLoginName), JoinTracer.Stage.LOGIN);
+
+        // Players already known to lack access are kicked without holding up the parser.
+        if (getServerManager().getJoinGate().rejectOnLogin(playerLoginName)) {
+            return Status.HANDLED;
+        }
+
         try {
             // In case we're going to kick the player, give time for the login to complete
             // so that we avoid a Broken Pipe message to the client.
@@ -53,13 +67,14 @@ public class PlayerLoginEventParser extends EventParser {
             // Ignore.
         }
 
-        String playerLoginName = m.group("name");
-        MPPlayer player;
+        PlayerPrivileges privileges;
 
-        // Pull UUID from authenticator and push to currentPlayers.
-        UUID uuid = getState().playerAuthUUIDs.get(playerLoginName);
+        // Pull UUID from authenticator and mark as current player.
+        UUID uuid = getState().players.login(playerLoginName);
         if (uuid != null) {
-            getState().currentPlayers.put(playerLoginName, uuid);
+            getServerManager().recordDecision(DecisionJournal.Type.LOGIN, uuid, playerLoginName, -1);
+            getServerManager().getSyncScheduler().notifyJoin();
+            getServerManager().getSessionTelemetry().sessionStarted();
         } else {
             wrapper.getLogger().error("Authenticator did not store UUID of player ".concat(playerLoginName), this);
         }
@@ -67,49 +82,32 @@ public class PlayerLoginEventParser extends EventParser {
         // Lookup player pass and set game mode.
         // NOTE: Other pass related events take place via ScheduledTasks.
         //
-        if (uuid != null && (player = wrapper.getMinepass().getPlayer(uuid)) != null) {
-            Integer minecraftGameMode = -2;
-            Pattern privPattern = Pattern.compile("mc:(?<name>[a-z]+)");
-            Pattern commandPattern = Pattern.compile("mc:/(?<command>.+)");
-
-            Matcher pm;
-            for (String p : player.privileges) {
-                if ((pm = privPattern.matcher(p)).find()) {
-                    // Standard privileges.
-                    //
-                    switch (pm.group("name")) {
-                        case "default":
-                            minecraftGameMode = -1;
-                            break;
-                        case "survival":
-                            minecraftGameMode = 0;
-                            break;
-                        case "creative":
-                            minecraftGameMode = 1;
-                            break;
-                        case "adventure":
-                            minecraftGameMode = 2;
-                            break;
-                        case "spectator":
-                            minecraftGameMode = 3;
-                            break;
-                    }
-                } else if ((pm = commandPattern.matcher(p)).find()) {
-                    // Command privileges.
-                    //
-                    String command = pm.group("command");
-                    command = command.replaceAll("\\$name", player.name);
-                    command = command.replaceAll("\\$uuid", uuid.toString());
-                    wrapper.getLogger().debug("Sending login command: ".concat(command), this);
-                    wrapper.getConsoleManager().sendCommand(command);
-                }
+        privileges = uuid != null ? getServerManager().getPassCache().get(uuid) : null;
+        tracer.mark(uuid, JoinTracer.Stage.PASS_LOOKUP);
+        if (uuid != null) {
+            getServerManager().recordDecision(
+                    privileges != null ? DecisionJournal.Type.PASS_RESOLVED : DecisionJournal.Type.PASS_MISSING,
+                    uuid, playerLoginName, privileges != null ? privileges.gameMode : -1
+            );
+        }
+
+        if (privileges != null) {
+            for (String command : privileges.commands) {
+                wrapper.getLogger().debug("Sending login command: ".concat(command), this);
+                wrapper.getConsoleManager().sendCommand(command);
             }
+            tracer.mark(uuid, JoinTracer.Stage.PRIVILEGE_COMMANDS);
 
-            if (minecraftGameMode > -1) {
-                wrapper.getServerManager().setPlayerGameMode(playerLoginName, minecraftGameMode);
-            } else if (minecraftGameMode < -1) {
+            if (privileges.gameMode > PlayerPrivileges.GAMEMODE_DEFAULT) {
+                wrapper.getServerManager().setPlayerGameMode(playerLoginName, privileges.gameMode);
+                tracer.mark(uuid, JoinTracer.Stage.GAMEMODE_OR_KICK);
+            } else if (!privileges.permitsAccess()) {
                 wrapper.getServerManager().kickPlayer(playerLoginName, "Your current MinePass does not permit access to this server.");
+                tracer.complete(uuid, JoinTracer.Stage.GAMEMODE_OR_KICK);
             }
+        } else if (uuid != null) {
+            // Player may have registered since the last sync.
+            getServerManager().getSyncScheduler().requestSync(uuid);
         }
 
         return Status.HANDLED;
@@ -119,4 +117,14 @@ public class PlayerLoginEventParser extends EventParser {
     protected boolean isEnabled() {
         return getState().minepassStarted;
     }
+
+    @Override
+    protected String[] getMessageMarkers() {
+        return markers;
+    }
+
+    @Override
+    protected Pattern getLosslessPattern() {
+        return lossless;
+    }
 }
@@ -24,13 +24,19 @@
 
 package net.minepass.gs.mc.wrapper.parsers;
 
+import net.minepass.gs.mc.wrapper.CommandTracker;
+import net.minepass.gs.mc.wrapper.DecisionJournal;
 import net.minepass.gs.mc.wrapper.EventParser;
 import net.minepass.gs.mc.wrapper.MP_MinecraftWrapper;
 
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class PlayerLogoutEventParser extends EventParser {
 
+    private static final String[] markers = {" left the game"};
+    private static final Pattern lossless = Pattern.compile("[A-Za-z0-9_]{1,16} left the game$");
+
     public PlayerLogoutEventParser(MP_MinecraftWrapper wrapper) {
         super(wrapper);
     }
@@ -42,7 +48,13 @@ public class PlayerLogoutEventParser extends EventParser {
 
     @Override
     protected Status run(Matcher m) {
-        getState().currentPlayers.remove(m.group("name"));
+        String name = groupName(m, "name");
+        getServerManager().recordDecision(DecisionJournal.Type.LOGOUT, getState().players.getAuthUUID(name), name, -1);
+        long loginTime = getState().players.logout(name);
+        if (loginTime > 0) {
+            getServerManager().getSessionTelemetry().sessionEnded(loginTime);
+        }
+        getServerManager().getCommandTracker().confirm(CommandTracker.Type.KICK, name);
         return Status.HANDLED;
     }
 
@@ -50,4 +62,14 @@ public class PlayerLogoutEventParser extends EventParser {
     protected boolean isEnabled() {
         return getState().minepassStarted;
     }
+
+    @Override
+    protected String[] getMessageMarkers() {
+        return markers;
+    }
+
+    @Override
+    protected Pattern getLosslessPattern() {
+        return lossless;
+    }
 }
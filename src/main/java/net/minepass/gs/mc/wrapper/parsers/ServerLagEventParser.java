@@ -0,0 +1,73 @@
+/*
+ *  This file is part of MinePass, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) MinePass.net <http://www.minepass.net>
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package net.minepass.gs.mc.wrapper.parsers;
+
+import net.minepass.gs.mc.wrapper.EventParser;
+import net.minepass.gs.mc.wrapper.MP_MinecraftWrapper;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ServerLagEventParser extends EventParser {
+
+    private static final String[] markers = {"Can't keep up!"};
+    private static final Pattern lossless = Pattern.compile("Can't keep up! ");
+
+    public ServerLagEventParser(MP_MinecraftWrapper wrapper) {
+        super(wrapper);
+    }
+
+    @Override
+    protected String getPatternString(String minecraftVersion) {
+        // e.g. "Can't keep up! Is the server overloaded? Running 2017ms or 40 ticks behind"
+        //      "Can't keep up! Did the system time change, or is the server overloaded? Running 2017ms behind, skipping 40 tick(s)"
+        return "^Can't keep up!.*Running (?<ms>[0-9]+)ms";
+    }
+
+    @Override
+    protected Status run(Matcher m) {
+        long behind = Long.parseLong(m.group("ms"));
+        if (getServerManager().getTickHealth().lagReported(behind)) {
+            wrapper.getLogger().warn(String.format(
+                    "Server is %dms behind, deferring MinePass messages and routine commands", behind), this);
+        }
+        return Status.HANDLED;
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return getState().minepassStarted;
+    }
+
+    @Override
+    protected String[] getMessageMarkers() {
+        return markers;
+    }
+
+    @Override
+    protected Pattern getLosslessPattern() {
+        return lossless;  // rare, and most needed when the server is overloaded
+    }
+}
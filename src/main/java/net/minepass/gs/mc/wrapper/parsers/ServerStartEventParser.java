@@ -24,39 +24,69 @@
 
 package net.minepass.gs.mc.wrapper.parsers;
 
+import net.minepass.gs.mc.wrapper.CharSlice;
 import net.minepass.gs.mc.wrapper.EventParser;
 import net.minepass.gs.mc.wrapper.MP_MinecraftWrapper;
 
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ServerStartEventParser extends EventParser {
 
+    private static final String[] markers = {"Starting", "Done"};
+    private static final Pattern lossless = Pattern.compile("(?:Starting minecraft server version |Done \\()");
+
     public ServerStartEventParser(MP_MinecraftWrapper wrapper) {
         super(wrapper);
     }
 
     @Override
     protected String getPatternString(String minecraftVersion) {
-        return "Starting.*version (?<version>[0-9]+(\\.[0-9]+)+)";
+        // "Done" alone only matches once a hold has expired, e.g. after a very slow world load.
+        return "Starting.*version (?<version>[0-9]+(\\.[0-9]+)+)|^Done \\(";
     }
 
     @Override
     protected Status run(Matcher m) {
-        getState().minecraftVersion = m.group("version");
+        if (m.start("version") < 0) {
+            getServerManager().startMinePass();
+            return Status.HANDLED;
+        }
+        getServerManager().minecraftVersionDetected(m.group("version"));
         return Status.HOLD;
     }
 
     @Override
-    protected boolean continuedInput(String logInput) {
-        if (logInput.matches("Done.*")) {
+    protected Status continuedInput(CharSequence logInput) {
+        if (CharSlice.startsWith(logInput, "Done")) {
             getServerManager().startMinePass();
-            return false;
+            return Status.HANDLED;
         }
-        return true;
+        return Status.IGNORED;
+    }
+
+    @Override
+    protected void holdExpired(String reason) {
+        wrapper.getLogger().warn("Server startup not completed yet, MinePass will start once it is (".concat(reason).concat(")"), this);
+    }
+
+    @Override
+    protected long getHoldTimeout() {
+        return 30 * 60 * 1000;  // allow for very large worlds
     }
 
     @Override
     protected boolean isEnabled() {
         return !getState().minepassStarted;
     }
+
+    @Override
+    protected String[] getMessageMarkers() {
+        return markers;
+    }
+
+    @Override
+    protected Pattern getLosslessPattern() {
+        return lossless;
+    }
 }
@@ -24,13 +24,18 @@
 
 package net.minepass.gs.mc.wrapper.parsers;
 
+import net.minepass.gs.mc.wrapper.CharSlice;
 import net.minepass.gs.mc.wrapper.EventParser;
 import net.minepass.gs.mc.wrapper.MP_MinecraftWrapper;
 
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ServerStopEventParser extends EventParser {
 
+    private static final String[] markers = {"Stopping"};
+    private static final Pattern lossless = Pattern.compile("Stopping (?:the )?server");
+
     public ServerStopEventParser(MP_MinecraftWrapper wrapper) {
         super(wrapper);
     }
@@ -52,7 +57,17 @@ public class ServerStopEventParser extends EventParser {
     }
 
     @Override
-    public boolean filterThread(String threadName) {
-        return threadName.equalsIgnoreCase("server shutdown thread");
+    public boolean filterThread(CharSequence threadName) {
+        return CharSlice.equalsIgnoreCase(threadName, "server shutdown thread");
+    }
+
+    @Override
+    protected String[] getMessageMarkers() {
+        return markers;
+    }
+
+    @Override
+    protected Pattern getLosslessPattern() {
+        return lossless;
     }
 }